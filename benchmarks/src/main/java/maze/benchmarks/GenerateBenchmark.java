@@ -0,0 +1,139 @@
+package maze.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import maze.BinaryTreeMaze;
+import maze.Ellers;
+import maze.GrowingTree;
+import maze.HuntAndKill;
+import maze.Maze;
+import maze.RandomizedKruskals;
+import maze.RandomizedPrims;
+import maze.RecursiveBacktracker;
+import maze.RecursiveDivider;
+import maze.Sidewinder;
+import maze.WeightedPrims;
+import maze.Wilsons;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.ByteStorage;
+import maze.storage.MazeStorage;
+
+/**
+ * Measures the throughput of {@link Maze#generate()} for every generator. The
+ * size parameter is the side of a square maze. The wide and tall shapes have
+ * the same number of nodes, size * size: the short side is size / 64, or 1
+ * for sizes below 64, and the long side makes up the rest.
+ * Run with the GC profiler ({@code -prof gc}) to get allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class GenerateBenchmark {
+    private static final int STRETCH = 64;
+
+    @Param({"BinaryTreeMaze", "Sidewinder", "Ellers", "GrowingTree",
+            "GrowingTreeRandom", "GrowingTreeMixed", "HuntAndKill",
+            "RandomizedKruskals", "RandomizedKruskalsLowMemory", "RandomizedPrims",
+            "RecursiveBacktracker", "RecursiveDivider", "WeightedPrims",
+            "Wilsons", "WilsonsCentered"})
+    public String algorithm;
+
+    @Param({"32", "256", "2048", "8192"})
+    public int size;
+
+    @Param({"SQUARE", "WIDE", "TALL"})
+    public Shape shape;
+
+    private Maze maze;
+
+    /** The aspect ratio of the benchmarked maze. */
+    public enum Shape {
+        SQUARE, WIDE, TALL;
+
+        int width(int size) {
+            switch (this) {
+            case WIDE: return size * size / shortSide(size);
+            case TALL: return shortSide(size);
+            default:   return size;
+            }
+        }
+
+        int height(int size) {
+            switch (this) {
+            case WIDE: return shortSide(size);
+            case TALL: return size * size / shortSide(size);
+            default:   return size;
+            }
+        }
+
+        /* The sizes are powers of two, so the long side comes out exact. */
+        private static int shortSide(int size) {
+            return Math.max(1, size / STRETCH);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        maze = create(algorithm, shape.width(size), shape.height(size));
+    }
+
+    @Benchmark
+    public Maze generate() {
+        maze.generate();
+        return maze;
+    }
+
+    static Maze create(String algorithm, int width, int height) {
+        return create(algorithm, new ByteStorage(width, height));
+    }
+
+    static Maze create(String algorithm, MazeStorage storage) {
+        RandomSource rnd = new SplitMix64();
+        switch (algorithm) {
+        case "BinaryTreeMaze":       return new BinaryTreeMaze(storage, rnd);
+        case "Sidewinder":           return new Sidewinder(storage, rnd);
+        case "Ellers":               return new Ellers(storage, rnd);
+        case "GrowingTree":          return new GrowingTree(storage, rnd);
+        case "GrowingTreeRandom":
+            GrowingTree tree = new GrowingTree(storage, rnd);
+            tree.setPolicy(GrowingTree.Policy.RANDOM);
+            return tree;
+        case "GrowingTreeMixed":
+            GrowingTree mixed = new GrowingTree(storage, rnd);
+            mixed.setPolicy(GrowingTree.Policy.MIXED);
+            return mixed;
+        case "HuntAndKill":          return new HuntAndKill(storage, rnd);
+        case "RandomizedKruskals":   return new RandomizedKruskals(storage, rnd);
+        case "RandomizedKruskalsLowMemory":
+            RandomizedKruskals kruskals = new RandomizedKruskals(storage, rnd);
+            kruskals.setLowMemory(true);
+            return kruskals;
+        case "RandomizedPrims":      return new RandomizedPrims(storage, rnd);
+        case "RecursiveBacktracker": return new RecursiveBacktracker(storage, rnd);
+        case "RecursiveDivider":     return new RecursiveDivider(storage, rnd);
+        case "WeightedPrims":        return new WeightedPrims(storage, rnd);
+        case "Wilsons":              return new Wilsons(storage, rnd);
+        case "WilsonsCentered":
+            Wilsons wilsons = new Wilsons(storage, rnd);
+            wilsons.setRoot(storage.getWidth() / 2, storage.getHeight() / 2);
+            return wilsons;
+        default: throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+}
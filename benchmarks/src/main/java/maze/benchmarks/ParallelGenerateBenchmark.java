@@ -0,0 +1,69 @@
+package maze.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import maze.Maze;
+
+/**
+ * Measures how {@link Maze#generate(ForkJoinPool)} scales with the number of
+ * threads for the generators that work in parallel. A parallelism of 0 runs
+ * the sequential {@link Maze#generate()} as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ParallelGenerateBenchmark {
+    @Param({"BinaryTreeMaze", "Sidewinder", "RandomizedKruskals", "RecursiveDivider"})
+    public String algorithm;
+
+    @Param({"4096", "16384"})
+    public int size;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int parallelism;
+
+    private Maze maze;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        maze = GenerateBenchmark.create(algorithm, size, size);
+        if (parallelism > 0) {
+            pool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Maze generate() {
+        if (pool == null) {
+            maze.generate();
+        } else {
+            maze.generate(pool);
+        }
+        return maze;
+    }
+}
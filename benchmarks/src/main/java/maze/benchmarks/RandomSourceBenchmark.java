@@ -0,0 +1,81 @@
+package maze.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import maze.random.BitPool;
+import maze.random.SplitMix64;
+import maze.random.Xoshiro256StarStar;
+
+/**
+ * Compares the cost of the draws made in generator inner loops for
+ * {@link java.util.Random} and the {@link maze.random.RandomSource}
+ * implementations, with and without a {@link BitPool}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomSourceBenchmark {
+    private final Random random = new Random(42);
+    private final SplitMix64 splitMix = new SplitMix64(42);
+    private final Xoshiro256StarStar xoshiro = new Xoshiro256StarStar(42);
+    private final BitPool bits = new BitPool(new SplitMix64(42));
+
+    @Benchmark
+    public boolean randomNextBoolean() {
+        return random.nextBoolean();
+    }
+
+    @Benchmark
+    public boolean splitMixNextBoolean() {
+        return splitMix.nextBoolean();
+    }
+
+    @Benchmark
+    public boolean xoshiroNextBoolean() {
+        return xoshiro.nextBoolean();
+    }
+
+    @Benchmark
+    public int randomNextInt() {
+        return random.nextInt(5);
+    }
+
+    @Benchmark
+    public int splitMixNextInt() {
+        return splitMix.nextInt(5);
+    }
+
+    @Benchmark
+    public int xoshiroNextInt() {
+        return xoshiro.nextInt(5);
+    }
+
+    @Benchmark
+    public boolean bitPoolNextBit() {
+        return bits.nextBit();
+    }
+
+    @Benchmark
+    public boolean randomNextIntChance() {
+        return random.nextInt(5) < 3;
+    }
+
+    @Benchmark
+    public boolean bitPoolNextChance() {
+        return bits.nextChance(3, 5);
+    }
+}
@@ -0,0 +1,71 @@
+package maze.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import maze.Maze;
+import maze.solve.AStarSolver;
+import maze.solve.BreadthFirstSolver;
+import maze.solve.DeadEndFillingSolver;
+import maze.solve.MazeSolver;
+
+/**
+ * Measures the time to solve a maze from the top-left to the bottom-right
+ * corner. The maze is generated once per trial, so only the solve is timed,
+ * including the copy of the walls that every solve starts with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class SolveBenchmark {
+    @Param({"RecursiveBacktracker", "Wilsons"})
+    public String algorithm;
+
+    @Param({"BREADTH_FIRST", "A_STAR", "DEAD_END_FILLING"})
+    public Solver solver;
+
+    @Param({"256", "2048", "7072"})
+    public int size;
+
+    private Maze maze;
+    private MazeSolver mazeSolver;
+
+    /** The benchmarked solver. */
+    public enum Solver {
+        BREADTH_FIRST, A_STAR, DEAD_END_FILLING;
+
+        MazeSolver create() {
+            switch (this) {
+            case A_STAR:           return new AStarSolver();
+            case DEAD_END_FILLING: return new DeadEndFillingSolver();
+            default:               return new BreadthFirstSolver();
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        maze = GenerateBenchmark.create(algorithm, size, size);
+        maze.generate();
+        mazeSolver = solver.create();
+    }
+
+    @Benchmark
+    public int[] solve() {
+        return mazeSolver.solve(maze, 0, 0, size - 1, size - 1);
+    }
+}
@@ -0,0 +1,72 @@
+package maze.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import maze.Maze;
+import maze.storage.ByteStorage;
+import maze.storage.MazeStorage;
+import maze.storage.PackedStorage;
+import maze.storage.TiledStorage;
+
+/**
+ * Compares the memory layouts of the storages on the generators that wander
+ * in every direction. The sizes go from a maze that fits in the L2 cache to
+ * one that is far larger than the last-level cache, so the benefit of tiling
+ * shows up, if at all, as the gap between the layouts changing with size.
+ * Run with {@code -prof perfnorm} on Linux to get cache misses per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class StorageLayoutBenchmark {
+    @Param({"RecursiveBacktracker", "Wilsons", "HuntAndKill", "GrowingTree"})
+    public String algorithm;
+
+    @Param({"512", "4096", "8192"})
+    public int size;
+
+    @Param({"BYTE", "TILED_8", "TILED_64", "PACKED"})
+    public Layout layout;
+
+    private Maze maze;
+
+    /** The storage of the benchmarked maze. */
+    public enum Layout {
+        BYTE, TILED_8, TILED_64, PACKED;
+
+        MazeStorage create(int width, int height) {
+            switch (this) {
+            case TILED_8:  return new TiledStorage(width, height, 8);
+            case TILED_64: return new TiledStorage(width, height, 64);
+            case PACKED:   return new PackedStorage(width, height);
+            default:       return new ByteStorage(width, height);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        maze = GenerateBenchmark.create(algorithm, layout.create(size, size));
+    }
+
+    @Benchmark
+    public Maze generate() {
+        maze.generate();
+        return maze;
+    }
+}
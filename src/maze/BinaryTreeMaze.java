@@ -1,7 +1,12 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import maze.random.BitPool;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /**
  * Implements the binary tree algorithm. The algorithm carves in one of two
@@ -11,7 +16,7 @@ import java.util.Random;
 public class BinaryTreeMaze extends Maze implements Serializable {
     private static final long serialVersionUID = -7079713075260480096L;
 
-    private final Random rnd;
+    private final RandomSource rnd;
 
     /**
      * Sets the dimensions of the maze.
@@ -21,8 +26,40 @@ public class BinaryTreeMaze extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public BinaryTreeMaze(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public BinaryTreeMaze(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if an argument is null
+     */
+    public BinaryTreeMaze(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
     }
 
     @Override
@@ -33,10 +70,78 @@ public class BinaryTreeMaze extends Maze implements Serializable {
     }
 
     private void binaryTreeMaze() {
+        BitPool bits = new BitPool(rnd);
         for (int y = 1; y < getHeight(); ++y) {
+            long row = index(0, y);
+            for (int x = 1; x < getWidth(); ++x) {
+                addWall(row + x, bits.nextBit() ? Direction.WEST : Direction.NORTH);
+            }
+        }
+    }
+
+    /**
+     * Generates the maze in parallel by splitting its rows into bands of a
+     * fixed height, each with its own split of the source of randomness. The
+     * result only depends on the state of the source and not on the number
+     * of threads. It differs from the result of {@link #generate()} for the
+     * same state. If the storage of the maze does not support concurrent
+     * writes, the bands are generated one at a time.
+     *
+     * @param  pool the pool that generates the bands
+     * @throws NullPointerException if pool is null
+     */
+    @Override
+    public void generate(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException();
+        }
+        clear();
+        addBorder();
+
+        int bands = RowBands.count(getHeight());
+        final RandomSource[] sources = RowBands.split(rnd, bands);
+        final long[][] deferred = new long[bands][];
+        RowBands.run(pool, getHeight(), supportsConcurrentWrites(), new RowBands.Task() {
+            @Override
+            public void run(int band, int y0, int y1) {
+                deferred[band] = binaryTreeBand(sources[band], y0, y1);
+            }
+        });
+
+        /*
+         * The north walls of the first row of a band are shared with the band
+         * above, so they are added once all bands are done.
+         */
+        for (int band = 1; band < bands; ++band) {
+            long row = index(0, band * RowBands.BAND_HEIGHT);
+            long[] north = deferred[band];
+            for (int i = 0; i < north.length; ++i) {
+                for (long w = north[i]; w != 0; w &= w - 1) {
+                    addWall(row + 64 * i + Long.numberOfTrailingZeros(w), Direction.NORTH);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the walls of the rows of a band. North walls of the first row are
+     * not added but returned as a bit set indexed by x.
+     */
+    private long[] binaryTreeBand(RandomSource rnd, int y0, int y1) {
+        BitPool bits = new BitPool(rnd);
+        long[] north = new long[(getWidth() + 63) >>> 6];
+        for (int y = Math.max(y0, 1); y < y1; ++y) {
+            long row = index(0, y);
             for (int x = 1; x < getWidth(); ++x) {
-                addWall(x, y, rnd.nextBoolean() ? Direction.WEST : Direction.NORTH);
+                if (bits.nextBit()) {
+                    addWall(row + x, Direction.WEST);
+                } else if (y == y0) {
+                    north[x >>> 6] |= 1L << x;
+                } else {
+                    addWall(row + x, Direction.NORTH);
+                }
             }
         }
+        return north;
     }
 }
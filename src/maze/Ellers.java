@@ -1,13 +1,20 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Random;
 
-/** Implements an algorithm which some people refer to as Eller's algorithm. */
+import maze.random.BitPool;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
+
+/**
+ * Implements an algorithm which some people refer to as Eller's algorithm.
+ * See {@link StreamingEllers} for a version that emits the maze row by row.
+ */
 public class Ellers extends Maze implements Serializable {
     private static final long serialVersionUID = -4403644618765868512L;
 
-    private final Random rnd;
+    private final RandomSource rnd;
 
     /**
      * Sets the dimensions of the maze.
@@ -17,8 +24,40 @@ public class Ellers extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public Ellers(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd    the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public Ellers(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if an argument is null
+     */
+    public Ellers(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
     }
 
     @Override
@@ -35,6 +74,9 @@ public class Ellers extends Maze implements Serializable {
         int[] l = new int[getWidth()];
         int[] r = new int[getWidth()];
 
+        /* Passages are created with a probability of 3/5. */
+        BitPool bits = new BitPool(rnd);
+
         /* Each node in the first row starts out in its own set. */
         for (int x = 0; x < getWidth(); ++x) {
             l[x] = r[x] = x;
@@ -44,44 +86,46 @@ public class Ellers extends Maze implements Serializable {
         int yl = getHeight() - 1;
 
         for (int y = 0; y < yl; ++y) {
+            long row = index(0, y);
             for (int x = 0; x < xl; ++x) {
                 /* Creates horizontal passages. */
-                if (r[x] != x + 1 && rnd.nextInt(5) < 3) {
+                if (r[x] != x + 1 && bits.nextChance(3, 5)) {
                     /* Unions the sets by performing a list splice. */
                     l[r[x]] = l[x + 1];
                     r[l[x + 1]] = r[x];
                     l[x + 1] = x;
                     r[x] = x + 1;
-                    removeWall(x, y, Direction.EAST);
+                    removeWall(row + x, Direction.EAST);
                 }
                 /* Creates vertical passages. */
-                if (r[x] != x && rnd.nextInt(5) < 3) {
+                if (r[x] != x && bits.nextChance(3, 5)) {
                     /* Removes node from list so it has its own set. */
                     l[r[x]] = l[x];
                     r[l[x]] = r[x];
                     l[x] = r[x] = x;
                 } else {
-                    removeWall(x, y, Direction.SOUTH);
+                    removeWall(row + x, Direction.SOUTH);
                 }
             }
             /* Creates vertical passages for the last column. */
-            if (r[xl] != xl && rnd.nextInt(5) < 3) {
+            if (r[xl] != xl && bits.nextChance(3, 5)) {
                 l[r[xl]] = l[xl];
                 r[l[xl]] = r[xl];
                 l[xl] = r[xl] = xl;
             } else {
-                removeWall(xl, y, Direction.SOUTH);
+                removeWall(row + xl, Direction.SOUTH);
             }
         }
 
         /* Creates the last row. */
+        long row = index(0, yl);
         for (int x = 0; x < xl; ++x) {
             if (r[x] != x + 1) {
                 l[r[x]] = l[x + 1];
                 r[l[x + 1]] = r[x];
                 l[x + 1] = x;
                 r[x] = x + 1;
-                removeWall(x, yl, Direction.EAST);
+                removeWall(row + x, Direction.EAST);
             }
         }
     }
@@ -0,0 +1,353 @@
+package maze;
+
+import java.io.Serializable;
+
+import maze.coordinates.Node;
+import maze.coordinates.Point;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
+
+/**
+ * Implements the growing tree algorithm. The algorithm keeps a set of active
+ * nodes, starting with a single node. At each step, it selects an active node
+ * and carves a passage to a random unvisited neighbor, which becomes active,
+ * or deactivates the node if it has no unvisited neighbors.
+ * <p>
+ * The way the active node is selected decides the texture of the maze.
+ * Always selecting the newest node works like {@link RecursiveBacktracker}
+ * and gives long, winding passages; selecting a random node works like
+ * {@link RandomizedPrims} and gives many short dead ends. Selecting the
+ * oldest node gives long straight passages radiating from the start. The
+ * mixed policy selects the newest node with a given probability and a random
+ * node otherwise.
+ * <p>
+ * Active nodes are kept in a ring buffer of node indices in order of age,
+ * which is kept between calls, so no objects are allocated per step. A node
+ * removed from the middle leaves a tombstone that random selection skips,
+ * and the buffer is compacted once tombstones fill half of it, so every
+ * step takes amortized constant time under every policy.
+ */
+public class GrowingTree extends Maze implements Serializable {
+    private static final long serialVersionUID = 7390817465245893102L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final RandomSource rnd;
+    private final Node start;
+    private Policy policy = Policy.NEWEST;
+    private double newestChance = 0.5;
+
+    /* Marks the slot of a node removed from the middle of the buffer. */
+    private static final int TOMBSTONE = -1;
+
+    /*
+     * The active nodes, from the oldest at head to the newest, in span slots
+     * of which size hold nodes and the rest hold tombstones. The first and
+     * the last slot always hold nodes.
+     */
+    private transient int[] active;
+    private transient int head;
+    private transient int span;
+    private transient int size;
+
+    /** The ways of selecting the active node to grow the maze from. */
+    public enum Policy {
+        /** Selects the node that was activated last. */
+        NEWEST,
+
+        /** Selects the node that was activated first. */
+        OLDEST,
+
+        /** Selects a random node. */
+        RANDOM,
+
+        /**
+         * Selects the newest node with the probability set by
+         * {@link GrowingTree#setNewestChance(double)} and a random node
+         * otherwise.
+         */
+        MIXED
+    }
+
+    /**
+     * Sets the dimensions of the maze.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive
+     */
+    public GrowingTree(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public GrowingTree(int width, int height, RandomSource rnd) {
+        super(width, height);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(width), rnd.nextInt(height));
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if the maze has more nodes than an
+     *         int can index
+     * @throws NullPointerException if an argument is null
+     */
+    public GrowingTree(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        if (storage.getSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maze is too large for the growing tree algorithm");
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(getWidth()), rnd.nextInt(getHeight()));
+    }
+
+    /**
+     * Sets the starting point of the maze generation algorithm.
+     *
+     * @param  x the x-coordinate of the algorithm's starting point
+     * @param  y the y-coordinate of the algorithm's starting point
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     */
+    public void setStart(int x, int y) {
+        checkBounds(x, y);
+        start.set(x, y);
+    }
+
+    /**
+     * Sets the starting point of the maze generation algorithm.
+     *
+     * @param  start the algorithm's starting point
+     * @throws OutOfBoundsException if start is out of bounds
+     * @throws NullPointerException if start is null
+     */
+    public void setStart(Point start) {
+        setStart(start.getX(), start.getY());
+    }
+
+    /** Returns the starting point of the maze generation algorithm. */
+    public Point getStart() {
+        return new Node(start);
+    }
+
+    /**
+     * Sets the way active nodes are selected. The default is
+     * {@link Policy#NEWEST}.
+     *
+     * @param  policy the selection policy
+     * @throws NullPointerException if policy is null
+     */
+    public void setPolicy(Policy policy) {
+        if (policy == null) {
+            throw new NullPointerException();
+        }
+        this.policy = policy;
+    }
+
+    /** Returns the way active nodes are selected. */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Sets the probability of selecting the newest node under the
+     * {@link Policy#MIXED} policy. The default is 0.5.
+     *
+     * @param  chance the probability of selecting the newest node
+     * @throws IllegalArgumentException if chance is not between 0 and 1
+     */
+    public void setNewestChance(double chance) {
+        if (!(chance >= 0 && chance <= 1)) {
+            throw new IllegalArgumentException("Chance must be between 0 and 1");
+        }
+        newestChance = chance;
+    }
+
+    /** Returns the probability of selecting the newest node when mixing. */
+    public double getNewestChance() {
+        return newestChance;
+    }
+
+    @Override
+    public void generate() {
+        fill();
+        growingTree(start);
+    }
+
+    private void growingTree(Node start) {
+        int width = getWidth();
+        Direction[] moves = new Direction[4];
+
+        if (active == null) {
+            active = new int[INITIAL_CAPACITY];
+        }
+        head = 0;
+        span = 0;
+        size = 0;
+        push(start.y * width + start.x);
+
+        while (size > 0) {
+            /* Selects an active node, as a slot offset from the oldest. */
+            int i = select();
+            int current = active[(head + i) & (active.length - 1)];
+            int x = current % width;
+            int y = current / width;
+
+            /* Finds adjacent unvisited nodes. */
+            int moveCount = getMoves(x, y, current, moves);
+
+            /* Deactivates the node if there are no such nodes. */
+            if (moveCount == 0) {
+                remove(i);
+                continue;
+            }
+
+            /* Picks a random adjacent unvisited node and activates it. */
+            Direction d = moves[rnd.nextInt(moveCount)];
+            removeWall(current, d);
+            push(current + offset(d));
+        }
+    }
+
+    private int select() {
+        switch (policy) {
+        case NEWEST:
+            return span - 1;
+        case OLDEST:
+            return 0;
+        case RANDOM:
+            /* Random removals swap instead of leaving tombstones. */
+            return rnd.nextInt(size);
+        default:
+            return (rnd.nextDouble() < newestChance) ? span - 1 : randomSlot();
+        }
+    }
+
+    /**
+     * Selects a uniformly random slot that holds a node, skipping tombstones.
+     * At most half of the slots are tombstones, so this takes fewer than two
+     * tries on average.
+     */
+    private int randomSlot() {
+        int mask = active.length - 1;
+        int i;
+        do {
+            i = rnd.nextInt(span);
+        } while (active[(head + i) & mask] == TOMBSTONE);
+        return i;
+    }
+
+    /**
+     * Adds a node after the newest. A full buffer is grown, dropping its
+     * tombstones on the way.
+     */
+    private void push(int n) {
+        if (span == active.length) {
+            int[] grown = new int[active.length << 1];
+            compact(grown);
+            active = grown;
+        }
+        active[(head + span++) & (active.length - 1)] = n;
+        ++size;
+    }
+
+    /**
+     * Removes the node at a slot offset from the oldest. The newest, oldest
+     * and mixed policies rely on the nodes staying in order of age, so a node
+     * in the middle is replaced by a tombstone rather than by another node.
+     * Only the random policy, which ignores the order, fills the gap with the
+     * newest node.
+     */
+    private void remove(int i) {
+        int mask = active.length - 1;
+        int last = span - 1;
+        --size;
+        if (i == 0) {
+            /* Drops the oldest along with the tombstones that follow it. */
+            do {
+                head = (head + 1) & mask;
+                --span;
+            } while (span > 0 && active[head] == TOMBSTONE);
+        } else if (i == last) {
+            do {
+                --span;
+            } while (span > 0 && active[(head + span - 1) & mask] == TOMBSTONE);
+        } else if (policy == Policy.RANDOM) {
+            active[(head + i) & mask] = active[(head + last) & mask];
+            --span;
+        } else {
+            active[(head + i) & mask] = TOMBSTONE;
+            if (span - size > span >>> 1) {
+                compact(active);
+            }
+        }
+    }
+
+    /**
+     * Moves the nodes, in order, to the front of an array, which may be the
+     * buffer itself, and leaves out the tombstones.
+     */
+    private void compact(int[] dst) {
+        int mask = active.length - 1;
+        if (dst == active && head + span > active.length) {
+            /* Unwraps the buffer first so that nodes only move toward the front. */
+            int[] copy = new int[active.length];
+            System.arraycopy(active, head, copy, 0, active.length - head);
+            System.arraycopy(active, 0, copy, active.length - head, head + span - active.length);
+            active = copy;
+            dst = copy;
+            head = 0;
+            mask = active.length - 1;
+        }
+        int k = 0;
+        for (int i = 0; i < span; ++i) {
+            int n = active[(head + i) & mask];
+            if (n != TOMBSTONE) {
+                dst[k++] = n;
+            }
+        }
+        head = 0;
+        span = k;
+    }
+
+    /**
+     * Gets the directions which point to adjacent unvisited nodes of the node
+     * at (x, y), whose index is i.
+     */
+    private int getMoves(int x, int y, int i, Direction[] moves) {
+        int width = getWidth();
+        int count = 0;
+        if (y > 0 && isUnvisited(i - width)) {
+            moves[count++] = Direction.NORTH;
+        }
+        if (x < width - 1 && isUnvisited(i + 1)) {
+            moves[count++] = Direction.EAST;
+        }
+        if (y < getHeight() - 1 && isUnvisited(i + width)) {
+            moves[count++] = Direction.SOUTH;
+        }
+        if (x > 0 && isUnvisited(i - 1)) {
+            moves[count++] = Direction.WEST;
+        }
+        return count;
+    }
+}
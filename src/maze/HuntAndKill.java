@@ -0,0 +1,291 @@
+package maze;
+
+import java.io.Serializable;
+
+import maze.coordinates.Node;
+import maze.coordinates.Point;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
+
+/**
+ * Implements the hunt-and-kill algorithm. The algorithm performs a random walk
+ * over unvisited nodes, adding each to the maze, until it reaches a node with
+ * no unvisited neighbors. It then hunts row by row for an unvisited node
+ * that is adjacent to a visited node, connects the two and walks on from
+ * there. Unlike {@link RecursiveBacktracker}, it keeps no trail to
+ * backtrack along.
+ * <p>
+ * A naive hunt scans the maze from the top every time, which is quadratic in
+ * the number of nodes. Here the unvisited nodes are indexed by a bitmap with
+ * a count per row, and the first row with unvisited nodes, the first word of
+ * that row with unvisited nodes and the first row with visited nodes are
+ * tracked as the maze grows. The hunt then finds its node without scanning
+ * rows or words that have already been visited.
+ */
+public class HuntAndKill extends Maze implements Serializable {
+    private static final long serialVersionUID = 3145928173460912846L;
+
+    private final RandomSource rnd;
+    private final Node start;
+
+    /* The unvisited nodes, one bit per node and one run of words per row. */
+    private transient long[] unvisited;
+    private transient int[] rowCount;
+    private transient int stride;
+
+    /* The first row with unvisited nodes and its first word with any. */
+    private transient int top;
+    private transient int topWord;
+
+    /* The first row with visited nodes. */
+    private transient int firstVisitedRow;
+
+    /**
+     * Sets the dimensions of the maze.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive
+     */
+    public HuntAndKill(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public HuntAndKill(int width, int height, RandomSource rnd) {
+        super(width, height);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(width), rnd.nextInt(height));
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if the maze is too large to index
+     * @throws NullPointerException if an argument is null
+     */
+    public HuntAndKill(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        if ((long) wordsPerRow(getWidth()) * getHeight() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large for hunt-and-kill");
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(getWidth()), rnd.nextInt(getHeight()));
+    }
+
+    /**
+     * Sets the starting point of the maze generation algorithm.
+     *
+     * @param  x the x-coordinate of the algorithm's starting point
+     * @param  y the y-coordinate of the algorithm's starting point
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     */
+    public void setStart(int x, int y) {
+        checkBounds(x, y);
+        start.set(x, y);
+    }
+
+    /**
+     * Sets the starting point of the maze generation algorithm.
+     *
+     * @param  start the algorithm's starting point
+     * @throws OutOfBoundsException if start is out of bounds
+     * @throws NullPointerException if start is null
+     */
+    public void setStart(Point start) {
+        setStart(start.getX(), start.getY());
+    }
+
+    /** Returns the starting point of the maze generation algorithm. */
+    public Point getStart() {
+        return new Node(start);
+    }
+
+    @Override
+    public void generate() {
+        fill();
+        huntAndKill(start);
+    }
+
+    private void huntAndKill(Node start) {
+        initIndex();
+
+        Direction[] moves = new Direction[4];
+        long remaining = (long) getWidth() * getHeight() - 1;
+
+        int x = start.x;
+        int y = start.y;
+        long current = index(x, y);
+        markVisited(x, y);
+
+        while (remaining > 0) {
+            /* Walks to a random adjacent unvisited node if there is one. */
+            int moveCount = getMoves(x, y, current, moves);
+            if (moveCount > 0) {
+                Direction d = moves[rnd.nextInt(moveCount)];
+                removeWall(current, d);
+                x += d.dx;
+                y += d.dy;
+                current += offset(d);
+            } else {
+                /* Hunts for a new node and connects it to a visited neighbor. */
+                long found = hunt();
+                x = (int) found;
+                y = (int) (found >>> 32);
+                current = index(x, y);
+                removeWall(current, moves[rnd.nextInt(getVisitedNeighbors(x, y, moves))]);
+            }
+            markVisited(x, y);
+            --remaining;
+        }
+    }
+
+    private static int wordsPerRow(int width) {
+        return (width + 63) >>> 6;
+    }
+
+    /** Marks every node as unvisited. */
+    private void initIndex() {
+        int width = getWidth();
+        int height = getHeight();
+        stride = wordsPerRow(width);
+        int words = stride * height;
+        if (unvisited == null || unvisited.length < words) {
+            unvisited = new long[words];
+        }
+        if (rowCount == null || rowCount.length < height) {
+            rowCount = new int[height];
+        }
+        long lastWord = -1L >>> (-width & 63);
+        for (int y = 0; y < height; ++y) {
+            int i = y * stride;
+            for (int k = 0; k < stride - 1; ++k) {
+                unvisited[i + k] = -1L;
+            }
+            unvisited[i + stride - 1] = lastWord;
+            rowCount[y] = width;
+        }
+        top = 0;
+        topWord = 0;
+        firstVisitedRow = height;
+    }
+
+    private void markVisited(int x, int y) {
+        unvisited[y * stride + (x >>> 6)] &= ~(1L << x);
+        --rowCount[y];
+        if (y < firstVisitedRow) {
+            firstVisitedRow = y;
+        }
+    }
+
+    private boolean isIndexedUnvisited(int x, int y) {
+        return (unvisited[y * stride + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Finds an unvisited node with a visited neighbor in the first row that
+     * has one, and returns its coordinates packed as (y << 32) | x.
+     */
+    private long hunt() {
+        /* Skips rows that have been fully visited. */
+        while (rowCount[top] == 0) {
+            ++top;
+            topWord = 0;
+        }
+        if (firstVisitedRow > top) {
+            /*
+             * The rows above the first visited row are unvisited, so the node
+             * is above the first visited node of that row.
+             */
+            int i = firstVisitedRow * stride;
+            int k = 0;
+            long visited;
+            while ((visited = ~unvisited[i + k]) == 0) {
+                ++k;
+            }
+            int x = (k << 6) + Long.numberOfTrailingZeros(visited);
+            return (long) (firstVisitedRow - 1) << 32 | x;
+        }
+        /*
+         * The rows above are fully visited, or this is the first row and has
+         * visited nodes. Either way, the first unvisited node of the row has
+         * a visited neighbor to the north or to the west, unless it is the
+         * first node of the first row.
+         */
+        int i = top * stride;
+        while (unvisited[i + topWord] == 0) {
+            ++topWord;
+        }
+        int x = (topWord << 6) + Long.numberOfTrailingZeros(unvisited[i + topWord]);
+        if (top == 0 && x == 0
+                && (getWidth() == 1 || isIndexedUnvisited(1, 0))
+                && (getHeight() == 1 || isIndexedUnvisited(0, 1))) {
+            /* Takes the node before the first visited node of the row. */
+            int k = 0;
+            long visited;
+            while ((visited = ~unvisited[i + k]) == 0) {
+                ++k;
+            }
+            x = (k << 6) + Long.numberOfTrailingZeros(visited) - 1;
+        }
+        return (long) top << 32 | x;
+    }
+
+    /**
+     * Gets the directions which point to adjacent unvisited nodes of the node
+     * at (x, y), whose index is i.
+     */
+    private int getMoves(int x, int y, long i, Direction[] moves) {
+        int width = getWidth();
+        int count = 0;
+        if (y > 0 && isUnvisited(i - width)) {
+            moves[count++] = Direction.NORTH;
+        }
+        if (x < width - 1 && isUnvisited(i + 1)) {
+            moves[count++] = Direction.EAST;
+        }
+        if (y < getHeight() - 1 && isUnvisited(i + width)) {
+            moves[count++] = Direction.SOUTH;
+        }
+        if (x > 0 && isUnvisited(i - 1)) {
+            moves[count++] = Direction.WEST;
+        }
+        return count;
+    }
+
+    /** Gets the directions which point to adjacent visited nodes. */
+    private int getVisitedNeighbors(int x, int y, Direction[] neighbors) {
+        int count = 0;
+        if (y > 0 && !isIndexedUnvisited(x, y - 1)) {
+            neighbors[count++] = Direction.NORTH;
+        }
+        if (x < getWidth() - 1 && !isIndexedUnvisited(x + 1, y)) {
+            neighbors[count++] = Direction.EAST;
+        }
+        if (y < getHeight() - 1 && !isIndexedUnvisited(x, y + 1)) {
+            neighbors[count++] = Direction.SOUTH;
+        }
+        if (x > 0 && !isIndexedUnvisited(x - 1, y)) {
+            neighbors[count++] = Direction.WEST;
+        }
+        return count;
+    }
+}
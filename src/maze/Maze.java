@@ -1,25 +1,41 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
 
 import maze.coordinates.Point;
+import maze.storage.ByteStorage;
+import maze.storage.MazeStorage;
 
 /**
  * A two-dimensional maze representation. The walls of a maze node are stored as
- * four bit fields. Each node is given a byte, leaving four unused bits per
- * node. These unused bits are made accessible to subclasses since they can be
- * useful when implementing maze generation algorithms that need to label nodes.
+ * four bit fields. Each node also has four flag bits. These are made accessible
+ * to subclasses since they can be useful when implementing maze generation
+ * algorithms that need to label nodes. How the bits are laid out in memory is
+ * up to the {@link MazeStorage} of the maze; by default each node is given a
+ * byte.
+ * <p>
+ * Besides coordinates, subclasses can address nodes by index, where the index
+ * of (x, y) is {@code y * width + x}. The index methods skip all checks and
+ * go straight to the storage, which makes them the fast path for the hot
+ * loops of generators.
  */
 public abstract class Maze implements Serializable {
-    private static final long serialVersionUID = 6114059191423368387L;
+    private static final long serialVersionUID = -1694126040845643616L;
 
     private static final int WALL_MASK = 0xf;
 
-    private final byte[] b;
+    private final MazeStorage storage;
     private final int width;
     private final int height;
 
+    /* The offsets of the neighbors of a node, indexed by direction ordinal. */
+    private final int[] offsets;
+
+    /* Counts the changes made through the public methods; see getModCount(). */
+    private transient int modCount;
+
     /**
      * Sets the dimensions of the maze.
      *
@@ -28,17 +44,43 @@ public abstract class Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     protected Maze(int width, int height) {
-        if (width <= 0 || height <= 0) {
-            throw new IllegalArgumentException("Width and height must be positive");
+        this(new ByteStorage(width, height));
+    }
+
+    /**
+     * Sets the storage of the maze. The dimensions of the maze are those of
+     * the storage.
+     *
+     * @param  storage the storage of the maze
+     * @throws NullPointerException if storage is null
+     */
+    protected Maze(MazeStorage storage) {
+        if (storage == null) {
+            throw new NullPointerException();
         }
-        this.width = width;
-        this.height = height;
-        b = new byte[width * height];
+        this.storage = storage;
+        width = storage.getWidth();
+        height = storage.getHeight();
+        offsets = new int[] {-width, 1, width, -1};
     }
 
     /** Generates the maze. */
     public abstract void generate();
 
+    /**
+     * Generates the maze using the threads of a pool. Generators that cannot
+     * work in parallel ignore the pool and call {@link #generate()}.
+     *
+     * @param  pool the pool to run on
+     * @throws NullPointerException if pool is null
+     */
+    public void generate(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException();
+        }
+        generate();
+    }
+
     /** Returns the width of the maze. */
     public int getWidth() {
         return width;
@@ -61,7 +103,7 @@ public abstract class Maze implements Serializable {
      */
     public boolean isWall(int x, int y, Direction d) {
         checkBounds(x, y);
-        return (b[y * width + x] & d.mask) != 0;
+        return storage.isWall(x, y, d);
     }
 
     /**
@@ -77,6 +119,71 @@ public abstract class Maze implements Serializable {
         return isWall(p.getX(), p.getY(), d);
     }
 
+    /**
+     * Returns the walls of a node as a mask of {@link Direction#mask} bits.
+     *
+     * @param  x the x-coordinate of the node
+     * @param  y the y-coordinate of the node
+     * @return the walls of the node
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     */
+    public int getWalls(int x, int y) {
+        checkBounds(x, y);
+        return storage.getWalls(x, y);
+    }
+
+    /**
+     * Returns the walls of a node as a mask of {@link Direction#mask} bits.
+     *
+     * @param  p the coordinates of the node
+     * @return the walls of the node
+     * @throws OutOfBoundsException if p is out of bounds
+     * @throws NullPointerException if p is null
+     */
+    public int getWalls(Point p) {
+        return getWalls(p.getX(), p.getY());
+    }
+
+    /**
+     * Copies the walls of a row of nodes into an array, as one mask of
+     * {@link Direction#mask} bits per node. This reads a whole row at a time,
+     * for consumers such as renderers that visit every node.
+     *
+     * @param  y the y-coordinate of the row
+     * @param  dst the array to copy into
+     * @param  offset the position in dst of the first node of the row
+     * @throws OutOfBoundsException if y is out of bounds
+     * @throws IndexOutOfBoundsException if dst has no room for the row at
+     *         offset
+     * @throws NullPointerException if dst is null
+     */
+    public void copyRow(int y, byte[] dst, int offset) {
+        checkBounds(0, y);
+        if (dst == null) {
+            throw new NullPointerException();
+        }
+        if (offset < 0 || offset > dst.length - width) {
+            throw new IndexOutOfBoundsException("Offset " + offset + ", length " + dst.length);
+        }
+        storage.copyRow(y, dst, offset);
+    }
+
+    /**
+     * Returns a read-only view of the maze, one byte per node in row-major
+     * order, without copying it. The low four bits of each byte hold the
+     * walls of the node as {@link Direction#mask} bits. The high four bits
+     * are the node's flags, which read as zero once a generator has released
+     * them at the end of generate(). The view follows later changes to the
+     * maze.
+     *
+     * @return the view
+     * @throws UnsupportedOperationException if the storage of the maze is not
+     *         laid out that way, as with packed or tiled storage
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return storage.asReadOnlyBuffer();
+    }
+
     /**
      * Adds a wall to a node.
      * 
@@ -88,12 +195,8 @@ public abstract class Maze implements Serializable {
      */
     public void addWall(int x, int y, Direction d) {
         checkBounds(x, y);
-        b[y * width + x] |= d.mask;
-        int tx = x + d.dx;
-        int ty = y + d.dy;
-        if (isInBounds(tx, ty)) {
-            b[ty * width + tx] |= d.getReverse().mask;
-        }
+        storage.addWall(x, y, d);
+        ++modCount;
     }
 
     /**
@@ -110,19 +213,14 @@ public abstract class Maze implements Serializable {
 
     /** Puts walls on the border. */
     public void addBorder() {
-        for (int y = 0; y < height; ++y) {
-            b[y * width] |= Direction.WEST.mask;
-            b[(y + 1) * width - 1] |= Direction.EAST.mask;
-        }
-        for (int x = 0; x < width; ++x) {
-            b[x] |= Direction.NORTH.mask;
-            b[(height - 1) * width + x] |= Direction.SOUTH.mask;
-        }
+        storage.addBorder();
+        ++modCount;
     }
 
     /** Puts walls everywhere. */
     public void fill() {
-        Arrays.fill(b, (byte) WALL_MASK);
+        storage.fill();
+        ++modCount;
     }
 
     /**
@@ -136,12 +234,8 @@ public abstract class Maze implements Serializable {
      */
     public void removeWall(int x, int y, Direction d) {
         checkBounds(x, y);
-        b[y * width + x] &= ~d.mask;
-        int tx = x + d.dx;
-        int ty = y + d.dy;
-        if (isInBounds(tx, ty)) {
-            b[ty * width + tx] &= ~d.getReverse().mask;
-        }
+        storage.removeWall(x, y, d);
+        ++modCount;
     }
 
     /**
@@ -158,13 +252,50 @@ public abstract class Maze implements Serializable {
 
     /** Removes all walls. */
     public void clear() {
-        Arrays.fill(b, (byte) 0);
+        storage.clear();
+        ++modCount;
+    }
+
+    /**
+     * Returns the number of nodes that have a wall in a direction. Together
+     * with the number of nodes, this gives the number of open passages.
+     *
+     * @param  d the direction of the walls
+     * @return the number of walls
+     * @throws NullPointerException if d is null
+     */
+    public long countWalls(Direction d) {
+        return storage.countWalls(d);
+    }
+
+    /** Returns the number of dead ends, nodes with exactly three walls. */
+    public long countDeadEnds() {
+        return storage.countDeadEnds();
+    }
+
+    /**
+     * Checks that every wall shared by two neighbors is either present at
+     * both or at neither. This holds for any maze built through this class,
+     * but not necessarily for one read from a damaged or hand-edited file.
+     */
+    public boolean isSymmetric() {
+        return storage.isSymmetric();
+    }
+
+    /**
+     * Returns a number that changes whenever walls are changed through the
+     * public methods. Every generator starts by calling {@link #fill()} or
+     * {@link #clear()}, so it also changes when the maze is regenerated.
+     * Changes made through the protected index methods alone, or directly to
+     * the storage, are not counted.
+     */
+    int getModCount() {
+        return modCount;
     }
 
     /** Returns the flag bits for a node. */
     protected int getFlags(int x, int y) {
-        /* Mask is required b/c of sign extension from widening conversion. */
-        return (b[y * width + x] >> 4) & WALL_MASK;
+        return storage.getFlags(x, y);
     }
 
     /** Returns the flag bits for a node. */
@@ -174,8 +305,7 @@ public abstract class Maze implements Serializable {
 
     /** Sets the flag bits for a node. */
     protected void setFlags(int x, int y, int flags) {
-        int i = y * width + x;
-        b[i] = (byte) ((b[i] & WALL_MASK) | (flags << 4));
+        storage.setFlags(x, y, flags);
     }
 
     /** Sets the flag bits for a node. */
@@ -183,6 +313,23 @@ public abstract class Maze implements Serializable {
         setFlags(p.getX(), p.getY(), flags);
     }
 
+    /**
+     * Tells the storage that the flag bits are no longer needed, which allows
+     * it to free them. Generators that use flags call this at the end of
+     * {@link #generate()}. All flags read as zero afterwards.
+     */
+    protected void releaseFlags() {
+        storage.releaseFlags();
+    }
+
+    /**
+     * Checks if the storage allows different threads to write to different
+     * nodes at the same time.
+     */
+    protected boolean supportsConcurrentWrites() {
+        return storage.supportsConcurrentWrites();
+    }
+
     /** Checks if coordinates are in bounds. */
     protected boolean isInBounds(int x, int y) {
         return x >= 0 && x < width && y >= 0 && y < height;
@@ -197,7 +344,56 @@ public abstract class Maze implements Serializable {
 
     /** Checks if a node is walled off from all directions. */
     protected boolean isUnvisited(int x, int y) {
-        return (b[y * width + x] & WALL_MASK) == WALL_MASK;
+        return storage.getWalls(x, y) == WALL_MASK;
+    }
+
+    /** Returns the index of a node. The coordinates are not checked. */
+    protected long index(int x, int y) {
+        return (long) y * width + x;
+    }
+
+    /** Returns the difference between the index of a node and its neighbor's. */
+    protected int offset(Direction d) {
+        return offsets[d.ordinal()];
+    }
+
+    /**
+     * Checks for the presence of a wall at the node at an index. The index is
+     * not checked.
+     */
+    protected boolean isWall(long i, Direction d) {
+        return storage.isWall(i, d);
+    }
+
+    /**
+     * Adds a wall to the node at an index. The index is not checked, and the
+     * neighbor in direction d must exist.
+     */
+    protected void addWall(long i, Direction d) {
+        storage.addWall(i, d);
+    }
+
+    /**
+     * Removes a wall from the node at an index. The index is not checked, and
+     * the neighbor in direction d must exist.
+     */
+    protected void removeWall(long i, Direction d) {
+        storage.removeWall(i, d);
+    }
+
+    /** Returns the flag bits for the node at an index. */
+    protected int getFlags(long i) {
+        return storage.getFlags(i);
+    }
+
+    /** Sets the flag bits for the node at an index. */
+    protected void setFlags(long i, int flags) {
+        storage.setFlags(i, flags);
+    }
+
+    /** Checks if the node at an index is walled off from all directions. */
+    protected boolean isUnvisited(long i) {
+        return storage.getWalls(i) == WALL_MASK;
     }
 
     @Override
@@ -206,7 +402,7 @@ public abstract class Maze implements Serializable {
         StringBuilder builder = new StringBuilder();
         builder.append("+");
         for (int x = 0; x < width; ++x) {
-            if ((b[x] & Direction.NORTH.mask) != 0) {
+            if (storage.isWall(x, 0, Direction.NORTH)) {
                 builder.append("---+");
             } else {
                 builder.append("   +");
@@ -214,14 +410,13 @@ public abstract class Maze implements Serializable {
         }
         builder.append(lineSeparator);
         for (int y = 0; y < height; ++y) {
-            int yw = y * width;
-            if ((b[yw] & Direction.WEST.mask) != 0) {
+            if (storage.isWall(0, y, Direction.WEST)) {
                 builder.append("|");
             } else {
                 builder.append(" ");
             }
             for (int x = 0; x < width; ++x) {
-                if ((b[yw + x] & Direction.EAST.mask) != 0) {
+                if (storage.isWall(x, y, Direction.EAST)) {
                     builder.append("   |");
                 } else {
                     builder.append("    ");
@@ -230,7 +425,7 @@ public abstract class Maze implements Serializable {
             builder.append(lineSeparator);
             builder.append("+");
             for (int x = 0; x < width; ++x) {
-                if ((b[yw + x] & Direction.SOUTH.mask) != 0) {
+                if (storage.isWall(x, y, Direction.SOUTH)) {
                     builder.append("---+");
                 } else {
                     builder.append("   +");
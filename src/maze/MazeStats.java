@@ -0,0 +1,361 @@
+package maze;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the shape of a maze, for scoring how hard it is. The walls are
+ * copied into a byte per node a row at a time, which is then scanned once
+ * to count the nodes of each wall pattern and follow the corridors between
+ * them, and searched breadth-first twice to find the diameter. The copy and
+ * the scan can be split into bands of rows that run in parallel on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * A node's exits are the sides without a wall, ignoring openings in the
+ * border. A node with one exit is a dead end, a node with two is part of a
+ * corridor, where it is a turn unless its exits are opposite, and a node with
+ * more is a junction. A corridor runs between two nodes that are not part of
+ * one, and its length is the number of steps along it.
+ * <p>
+ * The statistics are taken when the object is created, and do not follow
+ * later changes to the maze. Nodes are given by their index,
+ * {@code y * width + x}.
+ */
+public class MazeStats {
+    /* Marks a node as seen by the breadth-first search. */
+    private static final int SEEN = 1 << 4;
+
+    private final int width;
+    private final int height;
+
+    private long deadEnds;
+    private long junctions;
+    private long junctionExits;
+    private long turns;
+    private long straights;
+    private long corridors;
+    private long corridorSteps;
+    private long[] corridorLengths;
+
+    private int diameter;
+    private int diameterStart;
+    private int diameterEnd;
+
+    /**
+     * Measures a maze, one row at a time.
+     *
+     * @param  maze the maze to measure
+     * @throws IllegalArgumentException if the maze is not symmetric or if it
+     *         has more nodes than an array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public MazeStats(Maze maze) {
+        this(maze, null);
+    }
+
+    /**
+     * Measures a maze, copying and scanning bands of rows in parallel on a
+     * pool. The diameter is still found by a single thread.
+     *
+     * @param  maze the maze to measure
+     * @param  pool the pool to run on, or null to run on the calling thread
+     * @throws IllegalArgumentException if the maze is not symmetric or if it
+     *         has more nodes than an array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public MazeStats(final Maze maze, ForkJoinPool pool) {
+        if (maze == null) {
+            throw new NullPointerException();
+        }
+        width = maze.getWidth();
+        height = maze.getHeight();
+        long size = (long) width * height;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large to measure");
+        }
+        if (!maze.isSymmetric()) {
+            throw new IllegalArgumentException("Maze is not symmetric");
+        }
+        final byte[] cells = new byte[(int) size];
+        final int[] offsets = {-width, 1, width, -1};
+        boolean fork = pool != null;
+
+        RowBands.run(pool, height, fork, new RowBands.Task() {
+            @Override
+            public void run(int band, int y0, int y1) {
+                copyRows(maze, cells, y0, y1);
+            }
+        });
+
+        final Counts[] counts = new Counts[RowBands.count(height)];
+        RowBands.run(pool, height, fork, new RowBands.Task() {
+            @Override
+            public void run(int band, int y0, int y1) {
+                counts[band] = scan(cells, offsets, y0 * width, y1 * width);
+            }
+        });
+
+        Counts total = new Counts();
+        for (Counts c : counts) {
+            total.add(c);
+        }
+        for (int p = 0; p < 16; ++p) {
+            long count = total.patterns[p];
+            int exits = 4 - Integer.bitCount(p);
+            if (exits == 1) {
+                deadEnds += count;
+            } else if (exits > 2) {
+                junctions += count;
+                junctionExits += exits * count;
+            } else if (exits == 2) {
+                if (p == 0x5 || p == 0xa) {
+                    straights += count;
+                } else {
+                    turns += count;
+                }
+            }
+        }
+        corridors = total.corridors;
+        corridorSteps = total.corridorSteps;
+        corridorLengths = Arrays.copyOf(total.lengths, total.longest + 1);
+
+        /*
+         * The node farthest from any node is one end of a longest path in a
+         * tree, and the node farthest from it is the other end.
+         */
+        long first = farthest(cells, offsets, 0, SEEN);
+        diameterStart = (int) first;
+        long second = farthest(cells, offsets, diameterStart, 0);
+        diameterEnd = (int) second;
+        diameter = (int) (second >>> 32);
+    }
+
+    /** Copies rows [y0, y1) of a maze and walls off the border. */
+    private void copyRows(Maze maze, byte[] cells, int y0, int y1) {
+        for (int y = y0; y < y1; ++y) {
+            int row = y * width;
+            maze.copyRow(y, cells, row);
+            cells[row] |= Direction.WEST.mask;
+            cells[row + width - 1] |= Direction.EAST.mask;
+            if (y == 0) {
+                for (int x = 0; x < width; ++x) {
+                    cells[x] |= Direction.NORTH.mask;
+                }
+            }
+            if (y == height - 1) {
+                for (int x = 0; x < width; ++x) {
+                    cells[row + x] |= Direction.SOUTH.mask;
+                }
+            }
+        }
+    }
+
+    /** The statistics of a band of rows. */
+    private static final class Counts {
+        /* The number of nodes with each of the 16 wall patterns. */
+        final long[] patterns = new long[16];
+        long corridors;
+        long corridorSteps;
+        long[] lengths = new long[16];
+        int longest;
+
+        void addCorridor(int length) {
+            if (length >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(length + 1, lengths.length << 1));
+            }
+            ++lengths[length];
+            longest = Math.max(longest, length);
+            ++corridors;
+            corridorSteps += length;
+        }
+
+        void add(Counts c) {
+            for (int p = 0; p < patterns.length; ++p) {
+                patterns[p] += c.patterns[p];
+            }
+            corridors += c.corridors;
+            corridorSteps += c.corridorSteps;
+            if (c.longest >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, c.longest + 1);
+            }
+            for (int i = 0; i <= c.longest; ++i) {
+                lengths[i] += c.lengths[i];
+            }
+            longest = Math.max(longest, c.longest);
+        }
+    }
+
+    /**
+     * Counts the wall patterns of the nodes in [from, to) and follows each
+     * corridor that leaves them. A corridor is walked from both of its ends,
+     * and counted from the end with the lower index, or from the lower
+     * direction if it leads back to where it started.
+     */
+    private static Counts scan(byte[] cells, int[] offsets, int from, int to) {
+        Counts c = new Counts();
+        long[] patterns = c.patterns;
+        for (int i = from; i < to; ++i) {
+            int walls = cells[i] & 0xf;
+            ++patterns[walls];
+            if (Integer.bitCount(walls) == 2) {
+                continue;
+            }
+            for (int open = ~walls & 0xf; open != 0; open &= open - 1) {
+                int d = Integer.numberOfTrailingZeros(open);
+                int n = i + offsets[d];
+                int dir = d;
+                int length = 1;
+                int w = cells[n] & 0xf;
+                while (Integer.bitCount(w) == 2) {
+                    /* Leaves by the exit that is not the way back. */
+                    dir = Integer.numberOfTrailingZeros(~w & ~(1 << (dir ^ 2)));
+                    n += offsets[dir];
+                    w = cells[n] & 0xf;
+                    ++length;
+                }
+                if (i < n || (i == n && d < (dir ^ 2))) {
+                    c.addCorridor(length);
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Searches breadth-first from a node and returns the last node it
+     * reaches, in the low half, and its distance, in the high half. A node
+     * counts as seen once its SEEN bit equals mark, so a second search with
+     * the other mark clears the bits the first one set.
+     */
+    private static long farthest(byte[] cells, int[] offsets, int start, int mark) {
+        int[] queue = new int[1024];
+        int mask = queue.length - 1;
+        int head = 0;
+        int size = 1;
+        queue[0] = start;
+        cells[start] ^= SEEN;
+
+        int last = start;
+        int distance = 0;
+        int levelLeft = 1;
+        while (size > 0) {
+            int i = queue[head];
+            head = (head + 1) & mask;
+            --size;
+            last = i;
+            int walls = cells[i];
+            for (int d = 0; d < 4; ++d) {
+                if ((walls & (1 << d)) != 0) {
+                    continue;
+                }
+                int n = i + offsets[d];
+                if ((cells[n] & SEEN) == mark) {
+                    continue;
+                }
+                cells[n] ^= SEEN;
+                if (size == queue.length) {
+                    int[] grown = new int[queue.length << 1];
+                    System.arraycopy(queue, head, grown, 0, queue.length - head);
+                    System.arraycopy(queue, 0, grown, queue.length - head, head);
+                    queue = grown;
+                    mask = queue.length - 1;
+                    head = 0;
+                }
+                queue[(head + size) & mask] = n;
+                ++size;
+            }
+            if (--levelLeft == 0 && size > 0) {
+                ++distance;
+                levelLeft = size;
+            }
+        }
+        return (long) distance << 32 | last;
+    }
+
+    /** Returns the width of the maze. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Returns the height of the maze. */
+    public int getHeight() {
+        return height;
+    }
+
+    /** Returns the number of dead ends, nodes with one exit. */
+    public long getDeadEndCount() {
+        return deadEnds;
+    }
+
+    /** Returns the number of junctions, nodes with three or four exits. */
+    public long getJunctionCount() {
+        return junctions;
+    }
+
+    /**
+     * Returns the average number of ways on from a junction, not counting
+     * the way in, or 0 if there are no junctions. This is 2 for a maze of
+     * T-junctions and grows toward 3 as it gains crossings.
+     */
+    public double getBranchingFactor() {
+        return (junctions == 0) ? 0 : (double) (junctionExits - junctions) / junctions;
+    }
+
+    /** Returns the number of corridor nodes whose exits are not opposite. */
+    public long getTurnCount() {
+        return turns;
+    }
+
+    /**
+     * Returns the share of corridor nodes that are turns, or 0 if there are
+     * no corridor nodes.
+     */
+    public double getTurnRatio() {
+        long total = turns + straights;
+        return (total == 0) ? 0 : (double) turns / total;
+    }
+
+    /** Returns the number of corridors. */
+    public long getCorridorCount() {
+        return corridors;
+    }
+
+    /** Returns the average length of a corridor, or 0 if there are none. */
+    public double getMeanCorridorLength() {
+        return (corridors == 0) ? 0 : (double) corridorSteps / corridors;
+    }
+
+    /** Returns the length of the longest corridor, or 0 if there are none. */
+    public int getLongestCorridor() {
+        return corridorLengths.length - 1;
+    }
+
+    /**
+     * Returns the number of corridors of each length, indexed by length, up
+     * to the longest corridor.
+     */
+    public long[] getCorridorLengths() {
+        return corridorLengths.clone();
+    }
+
+    /**
+     * Returns the number of steps on the longest path between two nodes.
+     * This is exact for a perfect maze. For a maze with loops it is the
+     * length of a shortest path between two nodes far apart, which may fall
+     * short of the true diameter. Only nodes connected to the top-left node
+     * are considered.
+     */
+    public int getDiameter() {
+        return diameter;
+    }
+
+    /** Returns the index of one end of the path measured by the diameter. */
+    public int getDiameterStart() {
+        return diameterStart;
+    }
+
+    /** Returns the index of the other end of the path measured by the diameter. */
+    public int getDiameterEnd() {
+        return diameterEnd;
+    }
+}
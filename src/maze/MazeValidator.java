@@ -0,0 +1,270 @@
+package maze;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that a maze is perfect: that the two sides of every wall agree,
+ * that the border is closed, and that the passages form a spanning tree, so
+ * that there is exactly one path between any two nodes. It is cheap enough
+ * to run on every generated maze.
+ * <p>
+ * The maze is read a row at a time in a single pass. Each passage is added
+ * to a disjoint set forest, and a passage between two nodes that are already
+ * connected closes a loop. A maze of n nodes without loops is connected if
+ * it has n - 1 passages. Bands of rows can be checked in parallel on a
+ * {@link ForkJoinPool}: each band joins the passages within it, touching
+ * only its own part of the forest, and the passages between bands are
+ * joined afterwards.
+ */
+public final class MazeValidator {
+    private MazeValidator() {
+    }
+
+    /**
+     * Checks if a maze is perfect.
+     *
+     * @param  maze the maze to check
+     * @return true if the maze is perfect
+     * @throws IllegalArgumentException if the maze has more nodes than an
+     *         array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public static boolean isPerfect(Maze maze) {
+        return check(maze, null) == null;
+    }
+
+    /**
+     * Checks if a maze is perfect, checking bands of rows in parallel on a
+     * pool.
+     *
+     * @param  maze the maze to check
+     * @param  pool the pool to run on, or null to run on the calling thread
+     * @return true if the maze is perfect
+     * @throws IllegalArgumentException if the maze has more nodes than an
+     *         array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public static boolean isPerfect(Maze maze, ForkJoinPool pool) {
+        return check(maze, pool) == null;
+    }
+
+    /**
+     * Checks that a maze is perfect, and describes the first problem found
+     * if it is not.
+     *
+     * @param  maze the maze to check
+     * @throws IllegalArgumentException if the maze is not perfect or if it
+     *         has more nodes than an array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public static void validate(Maze maze) {
+        validate(maze, null);
+    }
+
+    /**
+     * Checks that a maze is perfect, checking bands of rows in parallel on a
+     * pool, and describes the first problem found if it is not.
+     *
+     * @param  maze the maze to check
+     * @param  pool the pool to run on, or null to run on the calling thread
+     * @throws IllegalArgumentException if the maze is not perfect or if it
+     *         has more nodes than an array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public static void validate(Maze maze, ForkJoinPool pool) {
+        String problem = check(maze, pool);
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+    }
+
+    /** Returns a description of the first problem found, or null if none. */
+    private static String check(final Maze maze, ForkJoinPool pool) {
+        if (maze == null) {
+            throw new NullPointerException();
+        }
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        long size = (long) width * height;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large to validate");
+        }
+        final int[] forest = new int[(int) size];
+        final String[] problems = new String[RowBands.count(height)];
+        final long[] passages = new long[problems.length];
+
+        RowBands.run(pool, height, pool != null, new RowBands.Task() {
+            @Override
+            public void run(int band, int y0, int y1) {
+                problems[band] = checkBand(maze, forest, y0, y1, passages, band);
+            }
+        });
+        long total = 0;
+        for (int band = 0; band < problems.length; ++band) {
+            if (problems[band] != null) {
+                return problems[band];
+            }
+            total += passages[band];
+        }
+
+        /* Joins the passages from the last row of each band to the next. */
+        byte[] row = new byte[width];
+        for (int y = RowBands.BAND_HEIGHT - 1; y < height - 1; y += RowBands.BAND_HEIGHT) {
+            maze.copyRow(y, row, 0);
+            int i = y * width;
+            for (int x = 0; x < width; ++x, ++i) {
+                if ((row[x] & Direction.SOUTH.mask) == 0 && !union(forest, i, i + width)) {
+                    return loop(x, y + 1);
+                }
+            }
+        }
+        if (total != size - 1) {
+            return "Maze is not connected";
+        }
+        return null;
+    }
+
+    /**
+     * Checks rows [y0, y1): their walls against their neighbors' and the
+     * border, counting their east and south passages and joining those that
+     * stay within the rows. Returns the first problem found, or null.
+     */
+    private static String checkBand(Maze maze, int[] forest, int y0, int y1,
+            long[] passages, int band) {
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        Arrays.fill(forest, y0 * width, y1 * width, -1);
+        byte[] row = new byte[width];
+        byte[] below = new byte[width];
+        maze.copyRow(y0, row, 0);
+        long count = 0;
+
+        for (int y = y0; y < y1; ++y) {
+            boolean last = y == height - 1;
+            if (!last) {
+                maze.copyRow(y + 1, below, 0);
+            }
+            if ((row[0] & Direction.WEST.mask) == 0) {
+                return open(0, y, Direction.WEST);
+            }
+            if ((row[width - 1] & Direction.EAST.mask) == 0) {
+                return open(width - 1, y, Direction.EAST);
+            }
+            /*
+             * Tracks the root of the current node's set, which is still known
+             * after joining it to its east neighbor. A node below has not been
+             * joined to anything yet, so it is simply hung under the root.
+             */
+            int root = -1;
+            int i = y * width;
+            for (int x = 0; x < width; ++x, ++i) {
+                int walls = row[x];
+                if (y == 0 && (walls & Direction.NORTH.mask) == 0) {
+                    return open(x, y, Direction.NORTH);
+                }
+                if (root < 0) {
+                    root = find(forest, i);
+                }
+                if (last) {
+                    if ((walls & Direction.SOUTH.mask) == 0) {
+                        return open(x, y, Direction.SOUTH);
+                    }
+                } else {
+                    /* Compares the south wall, bit 2, with the neighbor's north wall, bit 0. */
+                    if ((((walls >>> 2) ^ below[x]) & 1) != 0) {
+                        return oneSided(x, y, x, y + 1);
+                    }
+                    if ((walls & Direction.SOUTH.mask) == 0) {
+                        ++count;
+                        if (y + 1 < y1) {
+                            forest[i + width] = root;
+                            if (forest[root] == -1) {
+                                forest[root] = -2;
+                            }
+                        }
+                    }
+                }
+                if (x + 1 < width) {
+                    /* Compares the east wall, bit 1, with the neighbor's west wall, bit 3. */
+                    if ((((walls >>> 1) ^ (row[x + 1] >>> 3)) & 1) != 0) {
+                        return oneSided(x, y, x + 1, y);
+                    }
+                    if ((walls & Direction.EAST.mask) == 0) {
+                        ++count;
+                        int other = find(forest, i + 1);
+                        if (other == root) {
+                            return loop(x + 1, y);
+                        }
+                        root = link(forest, root, other);
+                    } else {
+                        root = -1;
+                    }
+                }
+            }
+            byte[] t = row;
+            row = below;
+            below = t;
+        }
+        passages[band] = count;
+        return null;
+    }
+
+    /**
+     * Finds the root of a node's set, halving the path on the way. A root
+     * holds the negated rank of its set.
+     */
+    private static int find(int[] forest, int x) {
+        int p = forest[x];
+        while (p >= 0) {
+            int grandparent = forest[p];
+            if (grandparent < 0) {
+                return p;
+            }
+            forest[x] = grandparent;
+            x = grandparent;
+            p = forest[x];
+        }
+        return x;
+    }
+
+    /** Joins the sets of two nodes, returning false if they were one set. */
+    private static boolean union(int[] forest, int x, int y) {
+        int rootX = find(forest, x);
+        int rootY = find(forest, y);
+        if (rootX == rootY) {
+            return false;
+        }
+        link(forest, rootX, rootY);
+        return true;
+    }
+
+    /** Joins the sets of two different roots by rank, returning the new root. */
+    private static int link(int[] forest, int rootX, int rootY) {
+        int rankX = forest[rootX];
+        int rankY = forest[rootY];
+        if (rankX > rankY) {
+            forest[rootX] = rootY;
+            return rootY;
+        }
+        if (rankX == rankY) {
+            --forest[rootX];
+        }
+        forest[rootY] = rootX;
+        return rootX;
+    }
+
+    private static String open(int x, int y, Direction d) {
+        String side = d.name().toLowerCase(Locale.ROOT);
+        return "Border is open on the " + side + " side of (" + x + ", " + y + ")";
+    }
+
+    private static String oneSided(int x, int y, int nx, int ny) {
+        return "Wall between (" + x + ", " + y + ") and (" + nx + ", " + ny + ") is one-sided";
+    }
+
+    private static String loop(int x, int y) {
+        return "Maze has a loop at (" + x + ", " + y + ")";
+    }
+}
@@ -2,7 +2,14 @@ package maze;
 
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /**
  * Implements a randomized version of Kruskal's algorithm. It is essentially
@@ -12,7 +19,11 @@ import java.util.Random;
 public class RandomizedKruskals extends Maze implements Serializable {
     private static final long serialVersionUID = 612546716632291472L;
 
-    private final Random rnd;
+    /* Marks a set without an outgoing edge; larger than any key. */
+    private static final long NO_EDGE = -1L;
+
+    private final RandomSource rnd;
+    private boolean lowMemory;
 
     /**
      * Sets the dimensions of the maze.
@@ -22,14 +33,82 @@ public class RandomizedKruskals extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public RandomizedKruskals(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param width  the width of the maze
+     * @param height the height of the maze
+     * @param rnd    the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     *         or if the maze has too many edges for an array
+     * @throws NullPointerException if rnd is null
+     */
+    public RandomizedKruskals(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        checkEdgeCount();
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if the maze has too many edges for an
+     *         array
+     * @throws NullPointerException if an argument is null
+     */
+    public RandomizedKruskals(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        checkEdgeCount();
+    }
+
+    /** Edges and nodes are indexed with ints, which limits the maze size. */
+    private void checkEdgeCount() {
+        long nodes = (long) getWidth() * getHeight();
+        if (2 * nodes - getWidth() - getHeight() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large for Kruskal's algorithm");
+        }
     }
 
     @Override
     public void generate() {
         fill();
-        randomizedKruskals();
+        if (lowMemory) {
+            lowMemoryKruskals();
+        } else {
+            randomizedKruskals();
+        }
+    }
+
+    /**
+     * Selects the low memory mode of {@link #generate()}. In this mode the
+     * edges are not stored but visited in the order of a pseudorandom
+     * permutation of their indices, and the disjoint set forest packs each
+     * parent index into as few bits as the maze size allows. Peak memory
+     * drops from about 12 bytes per node to about 4 or less, at the cost of
+     * computing the permutation for every edge.
+     *
+     * @param lowMemory true to select the low memory mode
+     */
+    public void setLowMemory(boolean lowMemory) {
+        this.lowMemory = lowMemory;
+    }
+
+    /** Checks if the low memory mode is selected. */
+    public boolean isLowMemory() {
+        return lowMemory;
     }
 
     private void randomizedKruskals() {
@@ -48,7 +127,261 @@ public class RandomizedKruskals extends Maze implements Serializable {
             int u = e & 0x7fffffff;
             int v = u + d.dy * getWidth() + d.dx;
             if (dsf.union(u, v)) {
-                removeWall(u % getWidth(), u / getWidth(), d);
+                removeWall(u, d);
+            }
+        }
+    }
+
+    /**
+     * Generates the maze in parallel. Every edge is given a 64-bit key by
+     * mixing its index with a random seed, and the minimum spanning tree
+     * under those keys is found with Boruvka's algorithm: in each round,
+     * every set of connected nodes picks its cheapest outgoing edge, and the
+     * picked edges are merged concurrently with a lock-free disjoint set
+     * forest. The keys are distinct, so the
+     * tree is the one that Kruskal's algorithm finds when taking the edges in
+     * key order, i.e. in uniformly random order. The result only depends on
+     * the state of the source of randomness and not on the number of
+     * threads. It differs from the result of {@link #generate()} for the same
+     * state.
+     *
+     * @param  pool the pool to run on
+     * @throws NullPointerException if pool is null
+     */
+    @Override
+    public void generate(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException();
+        }
+        fill();
+
+        final int width = getWidth();
+        final int height = getHeight();
+        final int nodes = width * height;
+
+        /* Draws again in the unlikely case that some edge's key is NO_EDGE. */
+        long s;
+        do {
+            s = rnd.nextLong();
+        } while (Long.compareUnsigned(edgeOf(s, NO_EDGE), 2L * nodes) < 0);
+        final long seed = s;
+        final ConcurrentDisjointSetForest dsf = new ConcurrentDisjointSetForest(nodes);
+        final AtomicLongArray cheapest = new AtomicLongArray(nodes);
+        final AtomicLongArray tree = new AtomicLongArray((int) ((2L * nodes + 63) >>> 6));
+        final AtomicBoolean merged = new AtomicBoolean();
+
+        RowBands.run(pool, height, true, new RowBands.Task() {
+            @Override
+            public void run(int band, int y0, int y1) {
+                for (int u = y0 * width; u < y1 * width; ++u) {
+                    cheapest.set(u, NO_EDGE);
+                }
+            }
+        });
+
+        /*
+         * Each band keeps the edges of its rows that still connect different
+         * sets, which shrinks the work of each round.
+         */
+        final int[][] live = new int[RowBands.count(height)][];
+        final int[] liveCount = new int[live.length];
+
+        do {
+            merged.set(false);
+
+            /* Finds the cheapest edge leaving each set. */
+            RowBands.run(pool, height, true, new RowBands.Task() {
+                @Override
+                public void run(int band, int y0, int y1) {
+                    if (live[band] == null) {
+                        live[band] = getEdges(y0, y1);
+                        liveCount[band] = live[band].length;
+                    }
+                    int[] edges = live[band];
+                    int kept = 0;
+                    for (int i = 0; i < liveCount[band]; ++i) {
+                        long e = edges[i] & 0xffffffffL;
+                        int u = (int) (e >>> 1);
+                        int v = ((e & 1) == 0) ? u + 1 : u + width;
+                        int ru = dsf.find(u);
+                        int rv = dsf.find(v);
+                        if (ru != rv) {
+                            long key = edgeKey(seed, e);
+                            lowerTo(cheapest, ru, key);
+                            lowerTo(cheapest, rv, key);
+                            edges[kept++] = edges[i];
+                        }
+                    }
+                    liveCount[band] = kept;
+                }
+            });
+
+            /*
+             * Merges the sets along their cheapest edges. An edge picked by
+             * both of its sets is only merged once.
+             */
+            RowBands.run(pool, height, true, new RowBands.Task() {
+                @Override
+                public void run(int band, int y0, int y1) {
+                    for (int r = y0 * width; r < y1 * width; ++r) {
+                        long key = cheapest.get(r);
+                        if (key == NO_EDGE) {
+                            continue;
+                        }
+                        cheapest.set(r, NO_EDGE);
+                        long e = edgeOf(seed, key);
+                        int u = (int) (e >>> 1);
+                        int v = ((e & 1) == 0) ? u + 1 : u + width;
+                        if (dsf.union(u, v)) {
+                            setBit(tree, e);
+                            merged.set(true);
+                        }
+                    }
+                }
+            });
+        } while (merged.get());
+
+        carveTree(pool, tree);
+    }
+
+    /**
+     * Removes the walls of the edges in a tree given as a bit set of edge
+     * indices. East walls only touch their own row, so all bands carve them
+     * at once. South walls also touch the row below, which is the first row
+     * of the next band, so even and odd bands take turns.
+     */
+    private void carveTree(ForkJoinPool pool, final AtomicLongArray tree) {
+        final int width = getWidth();
+        final int height = getHeight();
+        boolean fork = supportsConcurrentWrites();
+        for (int pass = 0; pass < 3; ++pass) {
+            final int parity = pass - 1;
+            RowBands.run(pool, height, fork, new RowBands.Task() {
+                @Override
+                public void run(int band, int y0, int y1) {
+                    if (parity >= 0 && (band & 1) != parity) {
+                        return;
+                    }
+                    Direction d = (parity < 0) ? Direction.EAST : Direction.SOUTH;
+                    int offset = (parity < 0) ? 0 : 1;
+                    for (int y = y0; y < y1; ++y) {
+                        for (int x = 0, u = y * width; x < width; ++x, ++u) {
+                            long e = 2L * u + offset;
+                            if ((tree.get((int) (e >>> 6)) & (1L << e)) != 0) {
+                                removeWall(u, d);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the edges of the nodes in rows y0 to y1 - 1 as indices 2u for
+     * the east edge and 2u + 1 for the south edge of node u. The indices are
+     * unsigned.
+     */
+    private int[] getEdges(int y0, int y1) {
+        int width = getWidth();
+        int rows = y1 - y0;
+        int count = 2 * width * rows - rows;
+        if (y1 == getHeight()) {
+            count -= width;
+        }
+        int[] edges = new int[count];
+        int index = 0;
+        for (int y = y0; y < y1; ++y) {
+            for (int x = 0, u = y * width; x < width; ++x, ++u) {
+                if (x < width - 1) {
+                    edges[index++] = 2 * u;
+                }
+                if (y < getHeight() - 1) {
+                    edges[index++] = 2 * u + 1;
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Returns the key of an edge: the seed mixed with the edge index by the
+     * finalizer of SplitMix64. The finalizer is a bijection of all 64 bits,
+     * so keys are distinct without ties to break, and the edge index can be
+     * recovered with {@link #edgeOf(long, long)}.
+     */
+    private static long edgeKey(long seed, long e) {
+        long z = seed ^ e;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Returns the index of the edge with a key, undoing each step of the mix. */
+    private static long edgeOf(long seed, long key) {
+        long z = key ^ (key >>> 31) ^ (key >>> 62);
+        z *= 0x319642b2d24d8ec3L;
+        z ^= (z >>> 27) ^ (z >>> 54);
+        z *= 0x96de1b173f119089L;
+        z ^= (z >>> 30) ^ (z >>> 60);
+        return z ^ seed;
+    }
+
+    /** Atomically lowers an element to a key in unsigned order. */
+    private static void lowerTo(AtomicLongArray a, int i, long key) {
+        long current = a.get(i);
+        while (Long.compareUnsigned(key, current) < 0
+                && !a.compareAndSet(i, current, key)) {
+            current = a.get(i);
+        }
+    }
+
+    /** Atomically sets a bit in a bit set. */
+    private static void setBit(AtomicLongArray bits, long i) {
+        int k = (int) (i >>> 6);
+        long mask = 1L << i;
+        long current = bits.get(k);
+        while ((current & mask) == 0 && !bits.compareAndSet(k, current, current | mask)) {
+            current = bits.get(k);
+        }
+    }
+
+    private void lowMemoryKruskals() {
+        int width = getWidth();
+        int height = getHeight();
+        long nodes = (long) width * height;
+
+        /*
+         * Edge 2u is the east edge of node u and edge 2u + 1 its south edge.
+         * Indices of edges that would cross the border are skipped.
+         */
+        long edgeCount = 2 * nodes;
+        FeistelPermutation order = new FeistelPermutation(edgeCount, rnd);
+        PackedDisjointSetForest dsf = new PackedDisjointSetForest(nodes);
+
+        /* Stops as soon as the spanning tree is complete. */
+        long remaining = nodes - 1;
+        for (long k = 0; k < edgeCount && remaining > 0; ++k) {
+            long e = order.get(k);
+            long u = e >>> 1;
+            Direction d;
+            long v;
+            if ((e & 1) == 0) {
+                if (u % width == width - 1) {
+                    continue;
+                }
+                d = Direction.EAST;
+                v = u + 1;
+            } else {
+                if (u >= nodes - width) {
+                    continue;
+                }
+                d = Direction.SOUTH;
+                v = u + width;
+            }
+            if (dsf.union(u, v)) {
+                removeWall(u, d);
+                --remaining;
             }
         }
     }
@@ -135,4 +468,182 @@ public class RandomizedKruskals extends Maze implements Serializable {
             return true;
         }
     }
+
+    /**
+     * A disjoint set forest that can be used by several threads at once
+     * without locks. Paths are halved with compare-and-set during finds, and
+     * roots are linked with compare-and-set in an order given by a hash of
+     * their indices, which keeps the trees shallow like union by rank.
+     */
+    private static class ConcurrentDisjointSetForest {
+        final AtomicIntegerArray parent;
+
+        ConcurrentDisjointSetForest(int n) {
+            parent = new AtomicIntegerArray(n);
+            for (int i = 0; i < n; ++i) {
+                parent.lazySet(i, i);
+            }
+        }
+
+        int find(int x) {
+            int p = parent.get(x);
+            while (p != x) {
+                int grandparent = parent.get(p);
+                if (grandparent != p) {
+                    parent.compareAndSet(x, p, grandparent);
+                }
+                x = grandparent;
+                p = parent.get(x);
+            }
+            return x;
+        }
+
+        boolean union(int x, int y) {
+            while (true) {
+                x = find(x);
+                y = find(y);
+                if (x == y) {
+                    return false;
+                }
+                if (priority(x) > priority(y)) {
+                    int tmp = x;
+                    x = y;
+                    y = tmp;
+                }
+                /* Fails if x stopped being a root, in which case it is retried. */
+                if (parent.compareAndSet(x, x, y)) {
+                    return true;
+                }
+            }
+        }
+
+        /** Orders roots by a hash so that linking behaves like a random order. */
+        private static long priority(int x) {
+            return ((x * 0x9e3779b9) & 0xffffffffL) << 32 | (x & 0xffffffffL);
+        }
+    }
+
+    /**
+     * A pseudorandom permutation of [0, size) that is computed rather than
+     * stored. A four-round Feistel network with random round keys permutes
+     * the smallest domain of an even number of bits that covers the range,
+     * and values outside the range are mapped again until they fall inside
+     * it (cycle walking), which keeps the mapping a bijection.
+     */
+    private static class FeistelPermutation {
+        private final long size;
+        private final int halfBits;
+        private final long halfMask;
+        private final long[] keys = new long[4];
+
+        FeistelPermutation(long size, RandomSource rnd) {
+            this.size = size;
+            int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(size - 1));
+            halfBits = (bits + 1) / 2;
+            halfMask = (1L << halfBits) - 1;
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = rnd.nextLong();
+            }
+        }
+
+        long get(long i) {
+            do {
+                i = encrypt(i);
+            } while (i >= size);
+            return i;
+        }
+
+        private long encrypt(long v) {
+            long l = v >>> halfBits;
+            long r = v & halfMask;
+            for (long key : keys) {
+                long t = l ^ (round(r ^ key) & halfMask);
+                l = r;
+                r = t;
+            }
+            return (l << halfBits) | r;
+        }
+
+        private static long round(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    /**
+     * A disjoint set forest whose parent indices are packed into as many bits
+     * as the largest index needs. Parents are stored XORed with the index of
+     * their node so that a zeroed array means every node is its own root.
+     * There is no room for ranks, so roots are linked in an order given by a
+     * hash of their indices, which keeps the trees shallow in expectation.
+     */
+    private static class PackedDisjointSetForest {
+        private final long[] a;
+        private final int bits;
+        private final long mask;
+
+        PackedDisjointSetForest(long n) {
+            bits = Math.max(1, 64 - Long.numberOfLeadingZeros(n - 1));
+            mask = (1L << bits) - 1;
+            long length = (n * bits + 63) >>> 6;
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Maze is too large for Kruskal's algorithm");
+            }
+            a = new long[(int) length];
+        }
+
+        private long parent(long x) {
+            long position = x * bits;
+            int k = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            long v = a[k] >>> offset;
+            if (offset + bits > 64) {
+                v |= a[k + 1] << (64 - offset);
+            }
+            return (v & mask) ^ x;
+        }
+
+        private void setParent(long x, long parent) {
+            long v = parent ^ x;
+            long position = x * bits;
+            int k = (int) (position >>> 6);
+            int offset = (int) (position & 63);
+            a[k] = (a[k] & ~(mask << offset)) | (v << offset);
+            if (offset + bits > 64) {
+                int shift = 64 - offset;
+                a[k + 1] = (a[k + 1] & ~(mask >>> shift)) | (v >>> shift);
+            }
+        }
+
+        long find(long x) {
+            long p = parent(x);
+            while (p != x) {
+                /* Path halving. */
+                long grandparent = parent(p);
+                setParent(x, grandparent);
+                x = grandparent;
+                p = parent(x);
+            }
+            return x;
+        }
+
+        boolean union(long x, long y) {
+            long rootX = find(x);
+            long rootY = find(y);
+            if (rootX == rootY) {
+                return false;
+            }
+            if (priority(rootX) < priority(rootY)) {
+                setParent(rootX, rootY);
+            } else {
+                setParent(rootY, rootX);
+            }
+            return true;
+        }
+
+        private static long priority(long x) {
+            return x * 0x9e3779b97f4a7c15L;
+        }
+    }
 }
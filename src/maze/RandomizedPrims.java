@@ -1,13 +1,13 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.util.Arrays;
 
 import maze.coordinates.Node;
 import maze.coordinates.Point;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /**
  * Implements a randomized version of Prim's algorithm. This algorithm is not
@@ -25,9 +25,16 @@ public class RandomizedPrims extends Maze implements Serializable {
     private static final int IN       = 1 << 0;
     private static final int FRONTIER = 1 << 1;
 
-    private final Random rnd;
+    private final RandomSource rnd;
     private final Node start;
 
+    /*
+     * Frontiers as node indices, kept between calls so that generating again
+     * does not allocate.
+     */
+    private transient int[] frontiers;
+    private transient int frontierCount;
+
     /**
      * Sets the dimensions of the maze.
      *
@@ -36,11 +43,49 @@ public class RandomizedPrims extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public RandomizedPrims(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public RandomizedPrims(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
         start = new Node(rnd.nextInt(width), rnd.nextInt(height));
     }
 
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if the maze has more nodes than an
+     *         int can index
+     * @throws NullPointerException if an argument is null
+     */
+    public RandomizedPrims(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        if (storage.getSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maze is too large for Prim's algorithm");
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(getWidth()), rnd.nextInt(getHeight()));
+    }
+
     /**
      * Sets the dimensions of the maze and the starting point of the maze
      * generation algorithm.
@@ -53,10 +98,30 @@ public class RandomizedPrims extends Maze implements Serializable {
      * @throws OutOfBoundsException if (x, y) is out of bounds
      */
     public RandomizedPrims(int width, int height, int startX, int startY) {
+        this(width, height, startX, startY, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze, the starting point of the maze
+     * generation algorithm and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  startX the x-coordinate of the algorithm's starting point
+     * @param  startY the y-coordinate of the algorithm's starting point
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     * @throws NullPointerException if rnd is null
+     */
+    public RandomizedPrims(int width, int height, int startX, int startY, RandomSource rnd) {
         super(width, height);
         checkBounds(startX, startY);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
         start = new Node(startX, startY);
-        rnd = new Random();
+        this.rnd = rnd;
     }
 
     /**
@@ -74,6 +139,22 @@ public class RandomizedPrims extends Maze implements Serializable {
         this(width, height, start.getX(), start.getY());
     }
 
+    /**
+     * Sets the dimensions of the maze, the starting point of the maze
+     * generation algorithm and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  start the algorithm's starting point
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws OutOfBoundsException if start is out of bounds
+     * @throws NullPointerException if start or rnd is null
+     */
+    public RandomizedPrims(int width, int height, Point start, RandomSource rnd) {
+        this(width, height, start.getX(), start.getY(), rnd);
+    }
+
     /**
      * Sets the starting point of the maze generation algorithm.
      *
@@ -106,26 +187,32 @@ public class RandomizedPrims extends Maze implements Serializable {
     public void generate() {
         fill();
         randomizedPrims(start);
+        releaseFlags();
     }
 
     private void randomizedPrims(Node start) {
         /* Frontiers are the unvisited nodes adjacent to the visited ones. */
-        List<Node> frontiers = new ArrayList<Node>();
+        if (frontiers == null) {
+            frontiers = new int[64];
+        }
+        frontierCount = 0;
         Direction[] neighbors = new Direction[4];
+        int width = getWidth();
 
         /* Marks the starting node as visited and gets its frontiers. */
-        setFlags(start, IN);
-        getFrontiers(start, frontiers);
+        int n = start.y * width + start.x;
+        setFlags(n, IN);
+        getFrontiers(n, start.x);
 
-        while (!frontiers.isEmpty()) {
-            /* Picks a random frontier. */
-            int random = rnd.nextInt(frontiers.size());
-            int last = frontiers.size() - 1;
-            Collections.swap(frontiers, random, last); // For O(1) removal.
-            Node current = frontiers.remove(last);
+        while (frontierCount > 0) {
+            /* Picks a random frontier and swaps the last one in its place. */
+            int random = rnd.nextInt(frontierCount);
+            int current = frontiers[random];
+            frontiers[random] = frontiers[--frontierCount];
+            int x = current % width;
 
             /* Picks a random visited neighbor of the frontier. */
-            int neighborCount = getVisitedNeighbors(current, neighbors);
+            int neighborCount = getVisitedNeighbors(current, x, neighbors);
             Direction d = neighbors[rnd.nextInt(neighborCount)];
 
             /*
@@ -136,49 +223,58 @@ public class RandomizedPrims extends Maze implements Serializable {
             setFlags(current, IN);
 
             /* Looks for new frontiers. */
-            getFrontiers(current, frontiers);
+            getFrontiers(current, x);
         }
     }
 
     /**
-     * Finds the unvisited neighbors of a node and adds them to the frontier
-     * list if they were not already included.
+     * Finds the unvisited neighbors of the node at index n and column x and
+     * adds them to the frontier list if they were not already included.
      */
-    private void getFrontiers(Node n, List<Node> frontiers) {
-        if (n.y > 0 && getFlags(n.x, n.y - 1) == OUT) {
-            markFrontier(n.x, n.y - 1, frontiers);
+    private void getFrontiers(int n, int x) {
+        int width = getWidth();
+        int lastRow = width * (getHeight() - 1);
+        if (n >= width && getFlags(n - width) == OUT) {
+            markFrontier(n - width);
         }
-        if (n.x < getWidth() - 1 && getFlags(n.x + 1, n.y) == OUT) {
-            markFrontier(n.x + 1, n.y, frontiers);
+        if (x < width - 1 && getFlags(n + 1) == OUT) {
+            markFrontier(n + 1);
         }
-        if (n.y < getHeight() - 1 && getFlags(n.x, n.y + 1) == OUT) {
-            markFrontier(n.x, n.y + 1, frontiers);
+        if (n < lastRow && getFlags(n + width) == OUT) {
+            markFrontier(n + width);
         }
-        if (n.x > 0 && getFlags(n.x - 1, n.y) == OUT) {
-            markFrontier(n.x - 1, n.y, frontiers);
+        if (x > 0 && getFlags(n - 1) == OUT) {
+            markFrontier(n - 1);
         }
     }
 
     /** Helper method for getFrontiers. */
-    private void markFrontier(int x, int y, List<Node> frontiers) {
-        Node n = new Node(x, y);
+    private void markFrontier(int n) {
         setFlags(n, FRONTIER);
-        frontiers.add(n);
+        if (frontierCount == frontiers.length) {
+            frontiers = Arrays.copyOf(frontiers, 2 * frontiers.length);
+        }
+        frontiers[frontierCount++] = n;
     }
 
-    /** Gets the directions pointing to the visited neighbors of a node. */
-    private int getVisitedNeighbors(Node n, Direction[] neighbors) {
+    /**
+     * Gets the directions pointing to the visited neighbors of the node at
+     * index n and column x.
+     */
+    private int getVisitedNeighbors(int n, int x, Direction[] neighbors) {
+        int width = getWidth();
+        int lastRow = width * (getHeight() - 1);
         int count = 0;
-        if (n.y > 0 && getFlags(n.x, n.y - 1) == IN) {
+        if (n >= width && getFlags(n - width) == IN) {
             neighbors[count++] = Direction.NORTH;
         }
-        if (n.x < getWidth() - 1 && getFlags(n.x + 1, n.y) == IN) {
+        if (x < width - 1 && getFlags(n + 1) == IN) {
             neighbors[count++] = Direction.EAST;
         }
-        if (n.y < getHeight() - 1 && getFlags(n.x, n.y + 1) == IN) {
+        if (n < lastRow && getFlags(n + width) == IN) {
             neighbors[count++] = Direction.SOUTH;
         }
-        if (n.x > 0 && getFlags(n.x - 1, n.y) == IN) {
+        if (x > 0 && getFlags(n - 1) == IN) {
             neighbors[count++] = Direction.WEST;
         }
         return count;
@@ -1,10 +1,12 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Random;
 
 import maze.coordinates.Node;
 import maze.coordinates.Point;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /**
  * Implements the recursive backtracking algorithm. The algorithm works by
@@ -13,7 +15,7 @@ import maze.coordinates.Point;
 public class RecursiveBacktracker extends Maze implements Serializable {
     private static final long serialVersionUID = -5689416515127359434L;
 
-    private final Random rnd;
+    private final RandomSource rnd;
     private final Node start;
 
     /**
@@ -24,11 +26,44 @@ public class RecursiveBacktracker extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public RecursiveBacktracker(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public RecursiveBacktracker(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
         start = new Node(rnd.nextInt(width), rnd.nextInt(height));
     }
 
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if an argument is null
+     */
+    public RecursiveBacktracker(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(getWidth()), rnd.nextInt(getHeight()));
+    }
+
     /**
      * Sets the dimensions of the maze and the starting point of the maze
      * generation algorithm.
@@ -41,10 +76,30 @@ public class RecursiveBacktracker extends Maze implements Serializable {
      * @throws OutOfBoundsException if (x, y) is out of bounds
      */
     public RecursiveBacktracker(int width, int height, int startX, int startY) {
+        this(width, height, startX, startY, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze, the starting point of the maze
+     * generation algorithm and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  startX the x-coordinate of the algorithm's starting point
+     * @param  startY the y-coordinate of the algorithm's starting point
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     * @throws NullPointerException if rnd is null
+     */
+    public RecursiveBacktracker(int width, int height, int startX, int startY, RandomSource rnd) {
         super(width, height);
         checkBounds(startX, startY);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
         start = new Node(startX, startY);
-        rnd = new Random();
+        this.rnd = rnd;
     }
 
     /**
@@ -62,6 +117,22 @@ public class RecursiveBacktracker extends Maze implements Serializable {
         this(width, height, start.getX(), start.getY());
     }
 
+    /**
+     * Sets the dimensions of the maze, the starting point of the maze
+     * generation algorithm and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  start the algorithm's starting point
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws OutOfBoundsException if start is out of bounds
+     * @throws NullPointerException if start or rnd is null
+     */
+    public RecursiveBacktracker(int width, int height, Point start, RandomSource rnd) {
+        this(width, height, start.getX(), start.getY(), rnd);
+    }
+
     /**
      * Sets the starting point of the maze generation algorithm.
      *
@@ -94,24 +165,29 @@ public class RecursiveBacktracker extends Maze implements Serializable {
     public void generate() {
         fill();
         recursiveBacktrack(start);
+        releaseFlags();
     }
 
     private void recursiveBacktrack(Node start) {
         Direction[] directions = Direction.values();
         Direction[] moves = new Direction[4];
-        int unvisited = getWidth() * getHeight() - 1;
+        long unvisited = (long) getWidth() * getHeight() - 1;
 
-        Node current = new Node(start);
+        int x = start.x;
+        int y = start.y;
+        long current = index(x, y);
 
         while (unvisited > 0) {
             /* Finds adjacent unvisited nodes. */
-            int moveCount = getMoves(current, moves);
+            int moveCount = getMoves(x, y, current, moves);
 
             /* Takes a step back if there are no such nodes. */
             if (moveCount == 0) {
                 /* Moves in the reverse of the saved direction. */
                 Direction rev = directions[getFlags(current)].getReverse();
-                current.translate(rev.dx, rev.dy);
+                x += rev.dx;
+                y += rev.dy;
+                current += offset(rev);
                 continue;
             }
 
@@ -120,7 +196,9 @@ public class RecursiveBacktracker extends Maze implements Serializable {
             removeWall(current, d);
 
             /* Updates the current node to the newly added node. */
-            current.translate(d.dx, d.dy);
+            x += d.dx;
+            y += d.dy;
+            current += offset(d);
 
             /* Saves the direction taken to reach the current node. */
             setFlags(current, d.ordinal());
@@ -129,19 +207,23 @@ public class RecursiveBacktracker extends Maze implements Serializable {
         }
     }
 
-    /** Gets the directions which point to adjacent unvisited nodes. */
-    private int getMoves(Node n, Direction[] moves) {
+    /**
+     * Gets the directions which point to adjacent unvisited nodes of the node
+     * at (x, y), whose index is i.
+     */
+    private int getMoves(int x, int y, long i, Direction[] moves) {
+        int width = getWidth();
         int count = 0;
-        if (n.y > 0 && isUnvisited(n.x, n.y - 1)) {
+        if (y > 0 && isUnvisited(i - width)) {
             moves[count++] = Direction.NORTH;
         }
-        if (n.x < getWidth() - 1 && isUnvisited(n.x + 1, n.y)) {
+        if (x < width - 1 && isUnvisited(i + 1)) {
             moves[count++] = Direction.EAST;
         }
-        if (n.y < getHeight() - 1 && isUnvisited(n.x, n.y + 1)) {
+        if (y < getHeight() - 1 && isUnvisited(i + width)) {
             moves[count++] = Direction.SOUTH;
         }
-        if (n.x > 0 && isUnvisited(n.x - 1, n.y)) {
+        if (x > 0 && isUnvisited(i - 1)) {
             moves[count++] = Direction.WEST;
         }
         return count;
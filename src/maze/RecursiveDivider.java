@@ -1,7 +1,13 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /**
  * Implements the recursive division algorithm. The algorithm starts with an
@@ -14,7 +20,10 @@ public class RecursiveDivider extends Maze implements Serializable {
     private static final boolean HORIZONTAL = true;
     private static final boolean VERTICAL   = false;
 
-    private final Random rnd;
+    /* Areas with at most this many nodes are divided without forking. */
+    private static final long PARALLEL_THRESHOLD = 1 << 16;
+
+    private final RandomSource rnd;
 
     /**
      * Sets the dimensions of the maze.
@@ -24,32 +33,120 @@ public class RecursiveDivider extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public RecursiveDivider(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public RecursiveDivider(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if an argument is null
+     */
+    public RecursiveDivider(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
     }
 
     @Override
     public void generate() {
         clear();
         addBorder();
-        recursiveDivision(0, 0, getWidth(), getHeight());
+        recursiveDivision(rnd, 0, 0, getWidth(), getHeight());
     }
 
-    private void recursiveDivision(int x, int y, int width, int height) {
-        if (width <= 1 || height <= 1) {
-            return;
+    /**
+     * Generates the maze by dividing areas larger than a threshold in
+     * parallel. Each area is divided with its own split of the source of
+     * randomness, so the result only depends on the state of the source and
+     * not on the number of threads. It differs from the result of
+     * {@link #generate()} for the same state. If the storage of the maze does
+     * not support concurrent writes, the areas are divided one at a time.
+     *
+     * @param  pool the pool that runs the divisions
+     * @throws NullPointerException if pool is null
+     */
+    @Override
+    public void generate(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException();
         }
+        clear();
+        addBorder();
+        pool.invoke(new Division(rnd, 0, 0, getWidth(), getHeight(),
+                supportsConcurrentWrites()));
+    }
+
+    /**
+     * Divides an area depth first. The areas still to be divided are kept on
+     * an explicit stack rather than the call stack, so that a long chain of
+     * divisions cannot overflow it.
+     */
+    private void recursiveDivision(RandomSource rnd, int x, int y, int width, int height) {
+        int[] stack = new int[64];
+        stack[0] = x;
+        stack[1] = y;
+        stack[2] = width;
+        stack[3] = height;
+        int top = 4;
+
+        while (top > 0) {
+            top -= 4;
+            if (stack[top + 2] <= 1 || stack[top + 3] <= 1) {
+                continue;
+            }
+            if (top + 8 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            /* The first area is pushed last so that it is divided first. */
+            divide(rnd, stack, top);
+            top += 8;
+        }
+    }
+
+    /**
+     * Divides an area in two with a wall. The area is read from a[i..i+3] as
+     * (x, y, width, height). The second half is written back to a[i..i+3]
+     * and the first half to a[i+4..i+7].
+     */
+    private void divide(RandomSource rnd, int[] a, int i) {
+        int x = a[i];
+        int y = a[i + 1];
+        int width = a[i + 2];
+        int height = a[i + 3];
 
         int aw, ah;
         int bx, by, bw, bh;
 
-        if (getOrientation(width, height) == HORIZONTAL) {
+        if (getOrientation(rnd, width, height) == HORIZONTAL) {
             int tx = x + width, ty = y + height;
             int wy = rnd.nextInt((ty - 1) - y) + y; // Picks a random location.
-            for (int wx = x; wx < tx; ++wx) { // Places the wall.
-                addWall(wx, wy, Direction.SOUTH);
+            long row = index(0, wy);
+            for (long j = row + x; j < row + tx; ++j) { // Places the wall.
+                addWall(j, Direction.SOUTH);
             }
-            removeWall(rnd.nextInt(tx - x) + x, wy, Direction.SOUTH); // Makes an opening.
+            removeWall(row + rnd.nextInt(tx - x) + x, Direction.SOUTH); // Makes an opening.
             bx = x;
             by = wy + 1;
             bw = width;
@@ -59,10 +156,11 @@ public class RecursiveDivider extends Maze implements Serializable {
         } else { // Perpendicular version of the above.
             int tx = x + width, ty = y + height;
             int wx = rnd.nextInt((tx - 1) - x) + x;
-            for (int wy = y; wy < ty; ++wy) {
-                addWall(wx, wy, Direction.EAST);
+            int step = offset(Direction.SOUTH);
+            for (long j = index(wx, y), end = index(wx, ty); j < end; j += step) {
+                addWall(j, Direction.EAST);
             }
-            removeWall(wx, rnd.nextInt(ty - y) + y, Direction.EAST);
+            removeWall(index(wx, rnd.nextInt(ty - y) + y), Direction.EAST);
             bx = wx + 1;
             by = y;
             bw = tx - wx - 1;
@@ -71,12 +169,18 @@ public class RecursiveDivider extends Maze implements Serializable {
             ah = height;
         }
 
-        recursiveDivision(x, y, aw, ah);
-        recursiveDivision(bx, by, bw, bh);
+        a[i] = bx;
+        a[i + 1] = by;
+        a[i + 2] = bw;
+        a[i + 3] = bh;
+        a[i + 4] = x;
+        a[i + 5] = y;
+        a[i + 6] = aw;
+        a[i + 7] = ah;
     }
 
     /** Chooses wall orientation based on the dimensions of an area. */
-    private boolean getOrientation(int width, int height) {
+    private static boolean getOrientation(RandomSource rnd, int width, int height) {
         if (width > 2 * height) {
             return VERTICAL;
         }
@@ -85,4 +189,50 @@ public class RecursiveDivider extends Maze implements Serializable {
         }
         return rnd.nextBoolean();
     }
+
+    /**
+     * Divides an area, forking the two halves while they are larger than
+     * the threshold. The halves touch separate nodes, so they can be divided
+     * concurrently.
+     */
+    private class Division extends RecursiveAction {
+        private static final long serialVersionUID = 3850935744810301539L;
+
+        private final RandomSource rnd;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private final boolean fork;
+
+        Division(RandomSource rnd, int x, int y, int width, int height, boolean fork) {
+            this.rnd = rnd;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.fork = fork;
+        }
+
+        @Override
+        protected void compute() {
+            if (width <= 1 || height <= 1) {
+                return;
+            }
+            if ((long) width * height <= PARALLEL_THRESHOLD) {
+                recursiveDivision(rnd, x, y, width, height);
+                return;
+            }
+            int[] a = {x, y, width, height, 0, 0, 0, 0};
+            divide(rnd, a, 0);
+            Division first = new Division(rnd.split(), a[4], a[5], a[6], a[7], fork);
+            Division second = new Division(rnd, a[0], a[1], a[2], a[3], fork);
+            if (fork) {
+                invokeAll(first, second);
+            } else {
+                first.compute();
+                second.compute();
+            }
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package maze;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import maze.random.RandomSource;
+
+/**
+ * Splits the rows of a maze into bands of a fixed height so that they can be
+ * processed in parallel. The bands do not depend on the number of threads,
+ * and neither do the sources of randomness handed out for them, which makes
+ * the results of band-parallel generators reproducible.
+ */
+final class RowBands {
+    /** The number of rows in a band. */
+    static final int BAND_HEIGHT = 64;
+
+    /* Ranges of at most this many bands are run without forking. */
+    private static final int SEQUENTIAL_BANDS = 1;
+
+    private RowBands() {
+    }
+
+    /** Processes the rows of one band. */
+    interface Task {
+        /**
+         * Processes a band.
+         *
+         * @param band the index of the band
+         * @param y0   the first row of the band
+         * @param y1   the row after the last row of the band
+         */
+        void run(int band, int y0, int y1);
+    }
+
+    /** Returns the number of bands for a maze of the specified height. */
+    static int count(int height) {
+        return (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+    }
+
+    /** Splits a source of randomness into one source per band. */
+    static RandomSource[] split(RandomSource rnd, int bands) {
+        RandomSource[] sources = new RandomSource[bands];
+        for (int i = 0; i < bands; ++i) {
+            sources[i] = rnd.split();
+        }
+        return sources;
+    }
+
+    /**
+     * Runs a task for every band of a maze of the specified height, in
+     * parallel on a pool if fork is true and one band at a time otherwise.
+     */
+    static void run(ForkJoinPool pool, int height, boolean fork, Task task) {
+        int bands = count(height);
+        if (fork) {
+            pool.invoke(new Bands(task, height, 0, bands));
+        } else {
+            for (int band = 0; band < bands; ++band) {
+                runBand(task, height, band);
+            }
+        }
+    }
+
+    private static void runBand(Task task, int height, int band) {
+        int y0 = band * BAND_HEIGHT;
+        task.run(band, y0, Math.min(y0 + BAND_HEIGHT, height));
+    }
+
+    /** Runs a range of bands by splitting it in halves. */
+    private static class Bands extends RecursiveAction {
+        private static final long serialVersionUID = -2614932873015961094L;
+
+        private final Task task;
+        private final int height;
+        private final int from;
+        private final int to;
+
+        Bands(Task task, int height, int from, int to) {
+            this.task = task;
+            this.height = height;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_BANDS) {
+                for (int band = from; band < to; ++band) {
+                    runBand(task, height, band);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Bands(task, height, from, mid), new Bands(task, height, mid, to));
+        }
+    }
+}
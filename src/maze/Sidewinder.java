@@ -1,16 +1,20 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import maze.Direction;
 import maze.Maze;
+import maze.random.BitPool;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /** Implements the Sidewinder algorithm. */
 public class Sidewinder extends Maze implements Serializable {
     private static final long serialVersionUID = -9051529889756722075L;
 
-    private final Random rnd;
+    private final RandomSource rnd;
 
     /**
      * Sets the dimensions of the maze.
@@ -20,8 +24,40 @@ public class Sidewinder extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public Sidewinder(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     * 
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public Sidewinder(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if an argument is null
+     */
+    public Sidewinder(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
     }
 
     @Override
@@ -31,19 +67,97 @@ public class Sidewinder extends Maze implements Serializable {
     }
 
     private void sidewinder() {
+        BitPool bits = new BitPool(rnd);
         for (int x = 0; x < getWidth() - 1; ++x) {
-            removeWall(x, 0, Direction.EAST);
+            removeWall(index(x, 0), Direction.EAST);
         }
         for (int y = 1; y < getHeight(); ++y) {
+            long row = index(0, y);
             for (int x = 0; x < getWidth(); ++x) {
                 int z = 1;
-                while (x < getWidth() - 1 && rnd.nextBoolean()) {
-                    removeWall(x, y, Direction.EAST);
+                while (x < getWidth() - 1 && bits.nextBit()) {
+                    removeWall(row + x, Direction.EAST);
                     ++x;
                     ++z;
                 }
-                removeWall(x - rnd.nextInt(z), y, Direction.NORTH);
+                removeWall(row + x - bits.nextInt(z), Direction.NORTH);
+            }
+        }
+    }
+
+    /**
+     * Generates the maze in parallel by splitting its rows into bands of a
+     * fixed height, each with its own split of the source of randomness. The
+     * result only depends on the state of the source and not on the number
+     * of threads. It differs from the result of {@link #generate()} for the
+     * same state. If the storage of the maze does not support concurrent
+     * writes, the bands are generated one at a time.
+     *
+     * @param  pool the pool that generates the bands
+     * @throws NullPointerException if pool is null
+     */
+    @Override
+    public void generate(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new NullPointerException();
+        }
+        fill();
+
+        int bands = RowBands.count(getHeight());
+        final RandomSource[] sources = RowBands.split(rnd, bands);
+        final long[][] deferred = new long[bands][];
+        RowBands.run(pool, getHeight(), supportsConcurrentWrites(), new RowBands.Task() {
+            @Override
+            public void run(int band, int y0, int y1) {
+                deferred[band] = sidewinderBand(sources[band], y0, y1);
+            }
+        });
+
+        /*
+         * The north walls of the first row of a band are shared with the band
+         * above, so they are carved once all bands are done.
+         */
+        for (int band = 1; band < bands; ++band) {
+            long row = index(0, band * RowBands.BAND_HEIGHT);
+            long[] north = deferred[band];
+            for (int i = 0; i < north.length; ++i) {
+                for (long w = north[i]; w != 0; w &= w - 1) {
+                    removeWall(row + 64 * i + Long.numberOfTrailingZeros(w), Direction.NORTH);
+                }
+            }
+        }
+    }
+
+    /**
+     * Carves the rows of a band. Passages to the north from the first row are
+     * not carved but returned as a bit set indexed by x.
+     */
+    private long[] sidewinderBand(RandomSource rnd, int y0, int y1) {
+        BitPool bits = new BitPool(rnd);
+        long[] north = new long[(getWidth() + 63) >>> 6];
+        for (int y = y0; y < y1; ++y) {
+            if (y == 0) {
+                for (int x = 0; x < getWidth() - 1; ++x) {
+                    removeWall(index(x, 0), Direction.EAST);
+                }
+                continue;
+            }
+            long row = index(0, y);
+            for (int x = 0; x < getWidth(); ++x) {
+                int z = 1;
+                while (x < getWidth() - 1 && bits.nextBit()) {
+                    removeWall(row + x, Direction.EAST);
+                    ++x;
+                    ++z;
+                }
+                int cx = x - bits.nextInt(z);
+                if (y == y0) {
+                    north[cx >>> 6] |= 1L << cx;
+                } else {
+                    removeWall(row + cx, Direction.NORTH);
+                }
             }
         }
+        return north;
     }
 }
@@ -0,0 +1,273 @@
+package maze;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import maze.random.BitPool;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+
+/**
+ * Implements Eller's algorithm as a stream of rows. Only the current row and
+ * the sets of its nodes are kept, so memory use is proportional to the width
+ * of the maze and the height can be unbounded. Given the same source of
+ * randomness, the rows are those of the maze generated by {@link Ellers}.
+ * <p>
+ * A row is an array holding the walls of each node in a byte, as a mask of
+ * {@link Direction#mask} bits. The rows of a maze are produced by calling
+ * {@link #nextRow(byte[])} for every row but the last and
+ * {@link #lastRow(byte[])} for the last, after which the generator starts
+ * over with a new maze.
+ */
+public class StreamingEllers {
+    private static final int ALL_WALLS = 0xf;
+
+    private final int width;
+    private final BitPool bits;
+
+    /*
+     * Circular doubly linked lists are used to store sets of connected maze
+     * nodes and these arrays store the left/right links of those lists.
+     */
+    private final int[] l;
+    private final int[] r;
+
+    /* The north walls of the current row, i.e. the south walls of the last. */
+    private final byte[] north;
+
+    private long row;
+
+    /** Receives the rows of a maze. */
+    public interface RowConsumer {
+        /**
+         * Accepts a row. The array is reused for the next row.
+         *
+         * @param y     the y-coordinate of the row
+         * @param walls the walls of each node of the row
+         */
+        void accept(long y, byte[] walls);
+    }
+
+    /**
+     * Sets the width of the maze.
+     *
+     * @param  width the width of the maze
+     * @throws IllegalArgumentException if width is not positive
+     */
+    public StreamingEllers(int width) {
+        this(width, new SplitMix64());
+    }
+
+    /**
+     * Sets the width of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public StreamingEllers(int width, RandomSource rnd) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive");
+        }
+        this.width = width;
+        bits = new BitPool(rnd);
+        l = new int[width];
+        r = new int[width];
+        north = new byte[width];
+        reset();
+    }
+
+    /** Returns the width of the maze. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Returns the y-coordinate of the next row. */
+    public long getRow() {
+        return row;
+    }
+
+    /** Starts over with a new maze. */
+    public void reset() {
+        /* Each node in the first row starts out in its own set. */
+        for (int x = 0; x < width; ++x) {
+            l[x] = r[x] = x;
+            north[x] = (byte) Direction.NORTH.mask;
+        }
+        row = 0;
+    }
+
+    /**
+     * Generates the next row of the maze, which must not be the last.
+     *
+     * @param  walls the array that receives the walls of each node
+     * @throws IllegalArgumentException if the array is shorter than the width
+     * @throws NullPointerException if walls is null
+     */
+    public void nextRow(byte[] walls) {
+        startRow(walls);
+        int xl = width - 1;
+        for (int x = 0; x < xl; ++x) {
+            /* Creates horizontal passages. */
+            if (r[x] != x + 1 && bits.nextChance(3, 5)) {
+                /* Unions the sets by performing a list splice. */
+                l[r[x]] = l[x + 1];
+                r[l[x + 1]] = r[x];
+                l[x + 1] = x;
+                r[x] = x + 1;
+                walls[x] &= ~Direction.EAST.mask;
+                walls[x + 1] &= ~Direction.WEST.mask;
+            }
+            /* Creates vertical passages. */
+            if (r[x] != x && bits.nextChance(3, 5)) {
+                /* Removes node from list so it has its own set. */
+                l[r[x]] = l[x];
+                r[l[x]] = r[x];
+                l[x] = r[x] = x;
+            } else {
+                walls[x] &= ~Direction.SOUTH.mask;
+            }
+        }
+        /* Creates vertical passages for the last column. */
+        if (r[xl] != xl && bits.nextChance(3, 5)) {
+            l[r[xl]] = l[xl];
+            r[l[xl]] = r[xl];
+            l[xl] = r[xl] = xl;
+        } else {
+            walls[xl] &= ~Direction.SOUTH.mask;
+        }
+        for (int x = 0; x < width; ++x) {
+            north[x] = ((walls[x] & Direction.SOUTH.mask) != 0) ? (byte) Direction.NORTH.mask : 0;
+        }
+        ++row;
+    }
+
+    /**
+     * Generates the last row of the maze, which connects all remaining sets,
+     * and starts over with a new maze.
+     *
+     * @param  walls the array that receives the walls of each node
+     * @throws IllegalArgumentException if the array is shorter than the width
+     * @throws NullPointerException if walls is null
+     */
+    public void lastRow(byte[] walls) {
+        startRow(walls);
+        for (int x = 0; x < width - 1; ++x) {
+            if (r[x] != x + 1) {
+                l[r[x]] = l[x + 1];
+                r[l[x + 1]] = r[x];
+                l[x + 1] = x;
+                r[x] = x + 1;
+                walls[x] &= ~Direction.EAST.mask;
+                walls[x + 1] &= ~Direction.WEST.mask;
+            }
+        }
+        reset();
+    }
+
+    /** Walls off the nodes of a row except where the last row left openings. */
+    private void startRow(byte[] walls) {
+        if (walls.length < width) {
+            throw new IllegalArgumentException("Row array is shorter than the width");
+        }
+        for (int x = 0; x < width; ++x) {
+            walls[x] = (byte) (north[x] | (ALL_WALLS & ~Direction.NORTH.mask));
+        }
+    }
+
+    /**
+     * Generates a maze of the specified height and passes its rows to a
+     * consumer.
+     *
+     * @param  height the height of the maze
+     * @param  consumer the consumer of the rows
+     * @throws IllegalArgumentException if height is not positive
+     * @throws NullPointerException if consumer is null
+     */
+    public void generate(long height, RowConsumer consumer) {
+        checkHeight(height);
+        reset();
+        byte[] walls = new byte[width];
+        for (long y = 0; y < height - 1; ++y) {
+            nextRow(walls);
+            consumer.accept(y, walls);
+        }
+        lastRow(walls);
+        consumer.accept(height - 1, walls);
+    }
+
+    /**
+     * Generates a maze of the specified height and writes it to a channel,
+     * one byte per node in row-major order.
+     *
+     * @param  height the height of the maze
+     * @param  channel the channel to write to
+     * @throws IllegalArgumentException if height is not positive
+     * @throws IOException if the channel cannot be written to
+     * @throws NullPointerException if channel is null
+     */
+    public void generate(long height, WritableByteChannel channel) throws IOException {
+        checkHeight(height);
+        reset();
+        byte[] walls = new byte[width];
+        ByteBuffer buffer = ByteBuffer.wrap(walls);
+        for (long y = 0; y < height; ++y) {
+            if (y < height - 1) {
+                nextRow(walls);
+            } else {
+                lastRow(walls);
+            }
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the rows of a maze of the specified height.
+     * The iterator returns the same array for every row, so a row must be
+     * consumed before the next is requested. The generator must not be used
+     * for anything else while the iterator is in use.
+     *
+     * @param  height the height of the maze
+     * @return an iterator over the rows
+     * @throws IllegalArgumentException if height is not positive
+     */
+    public Iterator<byte[]> rows(final long height) {
+        checkHeight(height);
+        reset();
+        return new Iterator<byte[]>() {
+            private final byte[] walls = new byte[width];
+            private long y;
+
+            @Override
+            public boolean hasNext() {
+                return y < height;
+            }
+
+            @Override
+            public byte[] next() {
+                if (y >= height) {
+                    throw new NoSuchElementException();
+                }
+                if (++y < height) {
+                    nextRow(walls);
+                } else {
+                    lastRow(walls);
+                }
+                return walls;
+            }
+        };
+    }
+
+    private static void checkHeight(long height) {
+        if (height <= 0) {
+            throw new IllegalArgumentException("Height must be positive");
+        }
+    }
+}
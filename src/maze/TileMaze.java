@@ -1,16 +1,40 @@
 package maze;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 
 import maze.coordinates.Point;
 
-/** Tile maze wrapper for {@link Maze}. */
+/**
+ * Tile maze wrapper for {@link Maze}.
+ * <p>
+ * A tile maze can be materialized as a bitset with a bit per tile, laid out
+ * row by row with each row starting on a new long. Lookups then take a
+ * single bit test. The bitset is rebuilt on the next lookup after the
+ * wrapped maze changes through its public methods or is regenerated.
+ */
 public class TileMaze implements Serializable {
     private static final long serialVersionUID = -5050221133107186563L;
 
+    /* The bits of the posts at the even positions of a row of tiles. */
+    private static final long POSTS = 0x5555555555555555L;
+
     private Maze maze;
     private int width;
     private int height;
+    private boolean materialized;
+
+    /* The tiles, one bit each, and the words per row; null when not built. */
+    private transient long[] tiles;
+    private transient int stride;
+
+    /* The modification count of the maze when the tiles were built. */
+    private transient int builtModCount;
+
+    /* A row of the maze, reused while building rows of tiles. */
+    private transient byte[] rowWalls;
 
     /**
      * Creates a tile maze wrapper around the specified {@link Maze} object.
@@ -32,9 +56,50 @@ public class TileMaze implements Serializable {
         if (maze == null) {
             throw new NullPointerException();
         }
+        if (materialized) {
+            checkMaterializable(maze);
+        }
         this.maze = maze;
         width = 2 * maze.getWidth() + 1;
         height = 2 * maze.getHeight() + 1;
+        stride = (width + 63) >>> 6;
+        tiles = null;
+        rowWalls = null;
+    }
+
+    /**
+     * Sets whether the tiles are kept in a bitset. A materialized tile maze
+     * takes a bit per tile, or about four bits per node of the maze, and
+     * answers {@link #isWall(int, int)} with a single bit test. The bitset is
+     * built lazily and rebuilt on the first lookup after the maze changes.
+     * Changes made directly to the storage of the maze, or by a subclass
+     * through its protected index methods outside of generate(), are not
+     * seen.
+     *
+     * @param  materialized whether to keep the tiles in a bitset
+     * @throws IllegalArgumentException if the bitset would not fit in an
+     *         array
+     */
+    public void setMaterialized(boolean materialized) {
+        if (materialized) {
+            checkMaterializable(maze);
+        } else {
+            tiles = null;
+        }
+        this.materialized = materialized;
+    }
+
+    /** Checks if the tiles are kept in a bitset. */
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    private static void checkMaterializable(Maze maze) {
+        long width = 2L * maze.getWidth() + 1;
+        long height = 2L * maze.getHeight() + 1;
+        if (((width + 63) >>> 6) * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large to materialize");
+        }
     }
 
     /** Returns the internal {@link Maze} object. */
@@ -67,6 +132,9 @@ public class TileMaze implements Serializable {
      */
     public boolean isWall(int x, int y) {
         checkBounds(x, y);
+        if (materialized) {
+            return (getTiles()[y * stride + (x >>> 6)] & (1L << x)) != 0;
+        }
         boolean xIsEven = (x % 2 == 0);
         boolean yIsEven = (y % 2 == 0);
         if (xIsEven && yIsEven) {
@@ -99,12 +167,114 @@ public class TileMaze implements Serializable {
         return isWall(p.getX(), p.getY());
     }
 
+    /**
+     * Returns the number of longs that hold a row of tiles, as copied by
+     * {@link #copyRow(int, long[], int)}.
+     */
+    public int getWordsPerRow() {
+        return stride;
+    }
+
+    /**
+     * Copies a row of tiles into an array of longs, one bit per tile. Tile x
+     * of the row is bit {@code x % 64} of {@code dst[offset + x / 64]}, and a
+     * bit is set if the tile is a wall. The bits past the end of the row are
+     * zero. This works whether or not the tile maze is materialized.
+     *
+     * @param  y the y-coordinate of the row of tiles
+     * @param  dst the array to copy into
+     * @param  offset the position in dst of the first word of the row
+     * @throws OutOfBoundsException if y is out of bounds
+     * @throws IndexOutOfBoundsException if dst has no room for the row at
+     *         offset
+     * @throws NullPointerException if dst is null
+     */
+    public void copyRow(int y, long[] dst, int offset) {
+        checkBounds(0, y);
+        if (dst == null) {
+            throw new NullPointerException();
+        }
+        if (offset < 0 || offset > dst.length - stride) {
+            throw new IndexOutOfBoundsException("Offset " + offset + ", length " + dst.length);
+        }
+        if (materialized) {
+            System.arraycopy(getTiles(), y * stride, dst, offset, stride);
+        } else {
+            buildRow(y, dst, offset);
+        }
+    }
+
+    /** Returns the bitset of tiles, rebuilding it if the maze has changed. */
+    private long[] getTiles() {
+        if (tiles == null || builtModCount != maze.getModCount()) {
+            rebuild();
+        }
+        return tiles;
+    }
+
+    private void rebuild() {
+        if (tiles == null) {
+            tiles = new long[stride * height];
+        }
+        for (int y = 0; y < height; ++y) {
+            buildRow(y, tiles, y * stride);
+        }
+        builtModCount = maze.getModCount();
+    }
+
+    /** Computes a row of tiles from the walls of the maze. */
+    private void buildRow(int y, long[] dst, int offset) {
+        if (rowWalls == null) {
+            rowWalls = new byte[maze.getWidth()];
+        }
+        byte[] walls = rowWalls;
+        int nodes = walls.length;
+        if ((y & 1) == 0) {
+            /*
+             * A row between two rows of nodes: posts at the even tiles and
+             * the south walls of the nodes above, or the north walls of the
+             * first row of nodes, at the odd tiles.
+             */
+            int mask = (y == 0) ? Direction.NORTH.mask : Direction.SOUTH.mask;
+            maze.copyRow((y == 0) ? 0 : y / 2 - 1, walls, 0);
+            Arrays.fill(dst, offset, offset + stride, POSTS);
+            dst[offset + stride - 1] &= -1L >>> (-width & 63);
+            for (int i = 0; i < nodes; ++i) {
+                if ((walls[i] & mask) != 0) {
+                    int x = 2 * i + 1;
+                    dst[offset + (x >>> 6)] |= 1L << x;
+                }
+            }
+        } else {
+            /*
+             * A row of nodes: the west wall of the first node, then each
+             * node's tile, which is open, followed by its east wall.
+             */
+            maze.copyRow(y / 2, walls, 0);
+            Arrays.fill(dst, offset, offset + stride, 0L);
+            if ((walls[0] & Direction.WEST.mask) != 0) {
+                dst[offset] |= 1L;
+            }
+            for (int i = 0; i < nodes; ++i) {
+                if ((walls[i] & Direction.EAST.mask) != 0) {
+                    int x = 2 * i + 2;
+                    dst[offset + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+    }
+
     private void checkBounds(int x, int y) {
         if (x < 0 || x >= width || y < 0 || y >= height) {
             throw new OutOfBoundsException("(" + x + ", " + y + ")");
         }
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        stride = (width + 63) >>> 6;
+    }
+
     @Override
     public String toString() {
         String lineSeparator = System.getProperty("line.separator");
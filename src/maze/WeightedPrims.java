@@ -0,0 +1,298 @@
+package maze;
+
+import java.io.Serializable;
+
+import maze.coordinates.Node;
+import maze.coordinates.Point;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
+
+/**
+ * Implements Prim's algorithm with edge weights. Unlike
+ * {@link RandomizedPrims}, which picks frontier nodes at random, this always
+ * adds the frontier node with the lightest edge to the maze, so the result is
+ * the minimum spanning tree for the weights. The weights are random unless
+ * they are supplied with {@link #setWeights(Weights)}, which gives control
+ * over the texture of the maze.
+ * <p>
+ * Frontier nodes are kept in an indexed binary heap of node indices, so
+ * every step takes O(log n) time and no objects are allocated per node. The
+ * heap arrays take 12 bytes per node and are kept between calls.
+ */
+public class WeightedPrims extends Maze implements Serializable {
+    private static final long serialVersionUID = -4810305431718364162L;
+
+    /* The first two bits are reserved for directions. */
+    private static final int IN       = 1 << 2;
+    private static final int FRONTIER = 1 << 3;
+
+    private final RandomSource rnd;
+    private final Node start;
+    private Weights weights;
+
+    /* The heap of frontier node indices and its keys, indexed by node. */
+    private transient int[] heap;
+    private transient int[] position;
+    private transient int[] key;
+    private transient int heapSize;
+
+    /**
+     * Supplies the weights of the edges of a maze. Weights are part of the
+     * serialized state of the maze, so an implementation must be
+     * serializable; a lambda or method reference qualifies as long as what
+     * it captures is.
+     */
+    public interface Weights extends Serializable {
+        /**
+         * Returns the weight of the edge between a node and its neighbor to
+         * the east or to the south. Lighter edges are carved first.
+         *
+         * @param  x the x-coordinate of the node
+         * @param  y the y-coordinate of the node
+         * @param  d {@link Direction#EAST} or {@link Direction#SOUTH}
+         * @return the weight of the edge
+         */
+        int getWeight(int x, int y, Direction d);
+    }
+
+    /**
+     * Sets the dimensions of the maze.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive
+     */
+    public WeightedPrims(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public WeightedPrims(int width, int height, RandomSource rnd) {
+        super(width, height);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(width), rnd.nextInt(height));
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if the maze has more nodes than an
+     *         int can index
+     * @throws NullPointerException if an argument is null
+     */
+    public WeightedPrims(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        if (storage.getSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maze is too large for Prim's algorithm");
+        }
+        this.rnd = rnd;
+        start = new Node(rnd.nextInt(getWidth()), rnd.nextInt(getHeight()));
+    }
+
+    /**
+     * Sets the starting point of the maze generation algorithm.
+     *
+     * @param  x the x-coordinate of the algorithm's starting point
+     * @param  y the y-coordinate of the algorithm's starting point
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     */
+    public void setStart(int x, int y) {
+        checkBounds(x, y);
+        start.set(x, y);
+    }
+
+    /**
+     * Sets the starting point of the maze generation algorithm.
+     *
+     * @param  start the algorithm's starting point
+     * @throws OutOfBoundsException if start is out of bounds
+     * @throws NullPointerException if start is null
+     */
+    public void setStart(Point start) {
+        setStart(start.getX(), start.getY());
+    }
+
+    /** Returns the starting point of the maze generation algorithm. */
+    public Point getStart() {
+        return new Node(start);
+    }
+
+    /**
+     * Sets the edge weights. If weights is null, every generated maze gets
+     * new random weights.
+     *
+     * @param weights the edge weights or null for random weights
+     */
+    public void setWeights(Weights weights) {
+        this.weights = weights;
+    }
+
+    /** Returns the edge weights or null if the weights are random. */
+    public Weights getWeights() {
+        return weights;
+    }
+
+    @Override
+    public void generate() {
+        fill();
+        weightedPrims(start, (weights != null) ? weights : new RandomWeights(rnd.nextLong()));
+        releaseFlags();
+    }
+
+    private void weightedPrims(Node start, Weights weights) {
+        int width = getWidth();
+        int nodes = width * getHeight();
+        if (heap == null || heap.length < nodes) {
+            heap = new int[nodes];
+            position = new int[nodes];
+            key = new int[nodes];
+        }
+        heapSize = 0;
+
+        Direction[] directions = Direction.values();
+
+        /* Marks the starting node as visited and offers its edges. */
+        int n = start.y * width + start.x;
+        setFlags(n, IN);
+        offerNeighbors(n, start.x, start.y, weights);
+
+        while (heapSize > 0) {
+            int current = poll();
+
+            /* Carves along the saved direction of the lightest edge. */
+            removeWall(current, directions[getFlags(current) & 3]);
+            setFlags(current, IN);
+
+            offerNeighbors(current, current % width, current / width, weights);
+        }
+    }
+
+    /**
+     * Offers the edges between the node at index n and (x, y) and its
+     * neighbors that are not yet in the tree. The flags of a neighbor are
+     * checked first, so no weight is computed for an edge into the tree.
+     */
+    private void offerNeighbors(int n, int x, int y, Weights weights) {
+        int width = getWidth();
+        int flags;
+        if (y > 0 && ((flags = getFlags(n - width)) & IN) == 0) {
+            offer(n - width, flags, Direction.SOUTH, weights.getWeight(x, y - 1, Direction.SOUTH));
+        }
+        if (x < width - 1 && ((flags = getFlags(n + 1)) & IN) == 0) {
+            offer(n + 1, flags, Direction.WEST, weights.getWeight(x, y, Direction.EAST));
+        }
+        if (y < getHeight() - 1 && ((flags = getFlags(n + width)) & IN) == 0) {
+            offer(n + width, flags, Direction.NORTH, weights.getWeight(x, y, Direction.SOUTH));
+        }
+        if (x > 0 && ((flags = getFlags(n - 1)) & IN) == 0) {
+            offer(n - 1, flags, Direction.EAST, weights.getWeight(x - 1, y, Direction.EAST));
+        }
+    }
+
+    /**
+     * Adds a node that is not in the tree to the heap, or lowers its key if
+     * the offered edge is lighter. The direction of the edge, seen from the
+     * node, is saved in the flags, whose current value is given.
+     */
+    private void offer(int n, int flags, Direction d, int weight) {
+        if ((flags & FRONTIER) == 0) {
+            setFlags(n, FRONTIER | d.ordinal());
+            key[n] = weight;
+            position[n] = heapSize;
+            heap[heapSize++] = n;
+            siftUp(position[n]);
+        } else if (weight < key[n]) {
+            setFlags(n, FRONTIER | d.ordinal());
+            key[n] = weight;
+            siftUp(position[n]);
+        }
+    }
+
+    /** Removes and returns the node with the lightest edge. */
+    private int poll() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int n = heap[i];
+        int k = key[n];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (key[p] <= k) {
+                break;
+            }
+            heap[i] = p;
+            position[p] = i;
+            i = parent;
+        }
+        heap[i] = n;
+        position[n] = i;
+    }
+
+    private void siftDown(int i) {
+        int n = heap[i];
+        int k = key[n];
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < heapSize && key[heap[right]] < key[c]) {
+                child = right;
+                c = heap[child];
+            }
+            if (k <= key[c]) {
+                break;
+            }
+            heap[i] = c;
+            position[c] = i;
+            i = child;
+        }
+        heap[i] = n;
+        position[n] = i;
+    }
+
+    /** Random weights computed from a seed and the edge, without storage. */
+    private static class RandomWeights implements Weights {
+        private final long seed;
+
+        RandomWeights(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public int getWeight(int x, int y, Direction d) {
+            long z = seed + (((long) y << 32 | x) << 1 | (d == Direction.SOUTH ? 1 : 0))
+                    * 0x9e3779b97f4a7c15L;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return (int) ((z ^ (z >>> 31)) >>> 33);
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package maze;
 
 import java.io.Serializable;
-import java.util.Random;
 
 import maze.coordinates.Node;
+import maze.coordinates.Point;
+import maze.random.RandomSource;
+import maze.random.SplitMix64;
+import maze.storage.MazeStorage;
 
 /**
  * Implements Wilson's algorithm. The algorithm creates a uniform spanning
  * tree (a spanning tree randomly selected from all possible spanning trees)
  * by performing loop-erased random walks.
+ * <p>
+ * The walks end at nodes already in the tree, which at first is only the
+ * root, so most of the work goes into the first walks, and the expected total
+ * length of the walks depends on the root alone. Any root gives a uniform
+ * spanning tree, but a root at the center of the maze is reached about twice
+ * as fast as one in a corner. The root is the bottom-right node unless it is
+ * set with {@link #setRoot(int, int)}.
  */
 public class Wilsons extends Maze implements Serializable {
     private static final long serialVersionUID = 5105826907978290069L;
@@ -16,7 +26,12 @@ public class Wilsons extends Maze implements Serializable {
     /* The first two bits are reserved for directions. */
     private static final int IN = 1 << 2;
 
-    private final Random rnd;
+    private final RandomSource rnd;
+    private final Node root;
+
+    /* The walks of the last generate() call and their steps. */
+    private transient long walkCount;
+    private transient long walkSteps;
 
     /**
      * Sets the dimensions of the maze.
@@ -26,14 +41,90 @@ public class Wilsons extends Maze implements Serializable {
      * @throws IllegalArgumentException if width or height is not positive
      */
     public Wilsons(int width, int height) {
+        this(width, height, new SplitMix64());
+    }
+
+    /**
+     * Sets the dimensions of the maze and the source of randomness.
+     *
+     * @param  width the width of the maze
+     * @param  height the height of the maze
+     * @param  rnd the source of randomness
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws NullPointerException if rnd is null
+     */
+    public Wilsons(int width, int height, RandomSource rnd) {
         super(width, height);
-        rnd = new Random();
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        root = new Node(getWidth() - 1, getHeight() - 1);
+    }
+
+    /**
+     * Sets the storage of the maze and the source of randomness. The
+     * dimensions of the maze are those of the storage.
+     *
+     * @param  storage the storage of the maze
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if an argument is null
+     */
+    public Wilsons(MazeStorage storage, RandomSource rnd) {
+        super(storage);
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+        root = new Node(getWidth() - 1, getHeight() - 1);
+    }
+
+    /**
+     * Sets the root of the tree, the node at which the first walk ends.
+     *
+     * @param  x the x-coordinate of the root
+     * @param  y the y-coordinate of the root
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     */
+    public void setRoot(int x, int y) {
+        checkBounds(x, y);
+        root.set(x, y);
+    }
+
+    /**
+     * Sets the root of the tree, the node at which the first walk ends.
+     *
+     * @param  root the root of the tree
+     * @throws OutOfBoundsException if root is out of bounds
+     * @throws NullPointerException if root is null
+     */
+    public void setRoot(Point root) {
+        setRoot(root.getX(), root.getY());
+    }
+
+    /** Returns the root of the tree. */
+    public Point getRoot() {
+        return new Node(root);
+    }
+
+    /** Returns the number of random walks made by the last generate() call. */
+    public long getWalkCount() {
+        return walkCount;
+    }
+
+    /**
+     * Returns the number of steps taken by the random walks of the last
+     * generate() call, including the steps that were erased with loops.
+     */
+    public long getWalkSteps() {
+        return walkSteps;
     }
 
     @Override
     public void generate() {
         fill();
         wilson();
+        releaseFlags();
     }
 
     /*
@@ -62,31 +153,44 @@ public class Wilsons extends Maze implements Serializable {
     private void wilson() {
         Direction[] directions = Direction.values();
         Direction[] moves = new Direction[4];
-        Node walk = new Node();
-        Node trace = new Node();
-        int i = getWidth() * getHeight() - 2;
+        int width = getWidth();
+        long i = (long) width * getHeight() - 1;
+
+        walkCount = 0;
+        walkSteps = 0;
 
         /* Marks a node as visited. */
-        setFlags(getWidth() - 1, getHeight() - 1, IN);
+        setFlags(root, IN);
 
-        /* Picks an unvisited node. */
-        Node current = new Node(i % getWidth(), i / getWidth());
+        while (true) {
+            /* Finds the next unvisited node. */
+            while (i >= 0 && getFlags(i) == IN) {
+                --i;
+            }
+            if (i < 0) {
+                break;
+            }
 
-        while (i >= 0) {
-            walk.set(current);
+            int x = (int) (i % width);
+            int y = (int) (i / width);
+            long walk = i;
 
             /* Walks randomly until a visited node is found. */
             while (getFlags(walk) != IN) {
-                int moveCount = getMoves(walk, moves);
+                int moveCount = getMoves(x, y, moves);
                 Direction d = moves[rnd.nextInt(moveCount)];
 
                 /* Saves the node's exit direction. */
                 setFlags(walk, d.ordinal());
 
-                walk.translate(d.dx, d.dy);
+                x += d.dx;
+                y += d.dy;
+                walk += offset(d);
+                ++walkSteps;
             }
+            ++walkCount;
 
-            trace.set(current);
+            long trace = i;
             int flags = getFlags(trace);
 
             /* Traces the path of the walk but avoids any loops. */
@@ -98,34 +202,25 @@ public class Wilsons extends Maze implements Serializable {
                 /* Marks the node as visited. */
                 setFlags(trace, IN);
 
-                trace.translate(d.dx, d.dy);
+                trace += offset(d);
                 flags = getFlags(trace);
             }
-
-            /* Finds the next unvisited node. */
-            while (i >= 0) {
-                current.set(i % getWidth(), i / getWidth());
-                if (getFlags(current) != IN) {
-                    break;
-                }
-                --i;
-            }
         }
     }
 
     /** Gets the moves that can be made from a node. */
-    private int getMoves(Node n, Direction[] moves) {
+    private int getMoves(int x, int y, Direction[] moves) {
         int count = 0;
-        if (n.y > 0) {
+        if (y > 0) {
             moves[count++] = Direction.NORTH;
         }
-        if (n.x < getWidth() - 1) {
+        if (x < getWidth() - 1) {
             moves[count++] = Direction.EAST;
         }
-        if (n.y < getHeight() - 1) {
+        if (y < getHeight() - 1) {
             moves[count++] = Direction.SOUTH;
         }
-        if (n.x > 0) {
+        if (x > 0) {
             moves[count++] = Direction.WEST;
         }
         return count;
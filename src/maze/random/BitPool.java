@@ -0,0 +1,106 @@
+package maze.random;
+
+/**
+ * Hands out random bits from a 64-bit buffer that is refilled from a
+ * {@link RandomSource} one draw at a time. This suits generators that make a
+ * small random decision for every node, where drawing a full random value
+ * per decision would waste most of its bits. A pool is not thread-safe.
+ */
+public final class BitPool {
+    private final RandomSource rnd;
+    private long bits;
+    private int count;
+
+    /**
+     * Creates a bit pool that draws from the specified source.
+     *
+     * @param  rnd the source of randomness
+     * @throws NullPointerException if rnd is null
+     */
+    public BitPool(RandomSource rnd) {
+        if (rnd == null) {
+            throw new NullPointerException();
+        }
+        this.rnd = rnd;
+    }
+
+    /** Returns a random bit as a boolean. */
+    public boolean nextBit() {
+        if (count == 0) {
+            bits = rnd.nextLong();
+            count = 64;
+        }
+        boolean bit = bits < 0;
+        bits <<= 1;
+        --count;
+        return bit;
+    }
+
+    /**
+     * Returns a random value made up of the specified number of bits.
+     *
+     * @param  n the number of bits, from 0 to 32
+     * @return a value in [0, 2^n)
+     * @throws IllegalArgumentException if n is not in [0, 32]
+     */
+    public int nextBits(int n) {
+        if (n < 0 || n > 32) {
+            throw new IllegalArgumentException("Bit count must be in [0, 32]");
+        }
+        if (n == 0) {
+            return 0;
+        }
+        if (count < n) {
+            /* The leftover bits are dropped to keep the draw branch-free. */
+            bits = rnd.nextLong();
+            count = 64;
+        }
+        int value = (int) (bits >>> (64 - n));
+        bits <<= n;
+        count -= n;
+        return value;
+    }
+
+    /**
+     * Returns a random value uniformly distributed between 0 (inclusive) and
+     * bound (exclusive). Powers of two take exactly as many bits as needed.
+     * Other bounds take 16 bits (32 for bounds above 255) and use Lemire's
+     * multiply-and-shift method, rejecting the rare draws that would bias the
+     * result.
+     *
+     * @param  bound the upper bound
+     * @return a value in [0, bound)
+     * @throws IllegalArgumentException if bound is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+        if ((bound & (bound - 1)) == 0) {
+            return nextBits(Integer.numberOfTrailingZeros(bound));
+        }
+        int n = (bound <= 0xff) ? 16 : 32;
+        long mask = (1L << n) - 1;
+        long m = (nextBits(n) & mask) * bound;
+        if ((m & mask) < bound) {
+            long threshold = (mask + 1 - bound) % bound;
+            while ((m & mask) < threshold) {
+                m = (nextBits(n) & mask) * bound;
+            }
+        }
+        return (int) (m >>> n);
+    }
+
+    /**
+     * Returns true with probability numerator / denominator. The draw is
+     * exact: it is equivalent to {@code nextInt(denominator) < numerator}.
+     *
+     * @param  numerator the number of favorable outcomes
+     * @param  denominator the number of possible outcomes
+     * @return true with the specified probability
+     * @throws IllegalArgumentException if denominator is not positive
+     */
+    public boolean nextChance(int numerator, int denominator) {
+        return nextInt(denominator) < numerator;
+    }
+}
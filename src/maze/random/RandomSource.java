@@ -0,0 +1,78 @@
+package maze.random;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A source of pseudorandom numbers for the maze generators. Implementations
+ * are not required to be thread-safe; a generator that works in parallel
+ * should give each thread its own source obtained through {@link #split()}.
+ */
+public abstract class RandomSource implements Serializable {
+    private static final long serialVersionUID = -3160283474932917512L;
+
+    private static final AtomicLong SEEDER = new AtomicLong(
+            mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+
+    /** Returns the next pseudorandom 64-bit value. */
+    public abstract long nextLong();
+
+    /**
+     * Returns a new source whose sequence is statistically independent of
+     * this one. Splitting also advances this source, so splitting repeatedly
+     * yields a series of independent sources.
+     */
+    public abstract RandomSource split();
+
+    /** Returns the next pseudorandom 32-bit value. */
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Returns a pseudorandom value uniformly distributed between 0
+     * (inclusive) and bound (exclusive).
+     *
+     * @param  bound the upper bound
+     * @return a value in [0, bound)
+     * @throws IllegalArgumentException if bound is not positive
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive");
+        }
+        /* Lemire's multiply-and-shift method with rejection for unbiasedness. */
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xffffffffL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xffffffffL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /** Returns the next pseudorandom boolean value. */
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /** Returns a pseudorandom value uniformly distributed in [0, 1). */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /** Returns a seed that is very likely to differ from all previous ones. */
+    protected static long newSeed() {
+        return mix64(SEEDER.getAndAdd(0x9e3779b97f4a7c15L));
+    }
+
+    /** The finalizer of the SplitMix64 generator (variant 13 of Stafford's mixers). */
+    protected static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,56 @@
+package maze.random;
+
+import java.io.Serializable;
+
+/**
+ * The SplitMix64 generator, i.e. the algorithm behind
+ * {@link java.util.SplittableRandom}. It has a period of 2^64 per gamma and
+ * splits into independent streams by choosing a new gamma.
+ */
+public class SplitMix64 extends RandomSource implements Serializable {
+    private static final long serialVersionUID = 4393562651929426004L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private final long gamma;
+
+    /** Creates a generator with a seed that is unlikely to repeat. */
+    public SplitMix64() {
+        this(newSeed());
+    }
+
+    /**
+     * Creates a generator with the specified seed.
+     *
+     * @param seed the initial seed
+     */
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMix64(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    @Override
+    public long nextLong() {
+        seed += gamma;
+        return mix64(seed);
+    }
+
+    @Override
+    public SplitMix64 split() {
+        return new SplitMix64(nextLong(), mixGamma(seed += gamma));
+    }
+
+    /** Derives an odd gamma with enough bit transitions from a seed. */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,88 @@
+package maze.random;
+
+import java.io.Serializable;
+
+/**
+ * The xoshiro256** generator by Blackman and Vigna. It has a period of
+ * 2^256 - 1 and splits by jumping 2^128 steps ahead, so split sources never
+ * overlap.
+ */
+public class Xoshiro256StarStar extends RandomSource implements Serializable {
+    private static final long serialVersionUID = -2208380418563711163L;
+
+    private static final long[] JUMP = {
+        0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL,
+        0xa9582618e03fc9aaL, 0x39abdc4529b1661cL
+    };
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /** Creates a generator with a seed that is unlikely to repeat. */
+    public Xoshiro256StarStar() {
+        this(newSeed());
+    }
+
+    /**
+     * Creates a generator with the specified seed. The state is filled in
+     * from the seed with SplitMix64, as recommended by the authors.
+     *
+     * @param seed the initial seed
+     */
+    public Xoshiro256StarStar(long seed) {
+        SplitMix64 seeder = new SplitMix64(seed);
+        s0 = seeder.nextLong();
+        s1 = seeder.nextLong();
+        s2 = seeder.nextLong();
+        s3 = seeder.nextLong();
+    }
+
+    private Xoshiro256StarStar(Xoshiro256StarStar other) {
+        s0 = other.s0;
+        s1 = other.s1;
+        s2 = other.s2;
+        s3 = other.s3;
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public Xoshiro256StarStar split() {
+        Xoshiro256StarStar split = new Xoshiro256StarStar(this);
+        jump();
+        return split;
+    }
+
+    /** Advances the state by 2^128 steps. */
+    private void jump() {
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+        for (long jump : JUMP) {
+            for (int b = 0; b < 64; ++b) {
+                if ((jump & (1L << b)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+}
@@ -0,0 +1,134 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * Solves a maze with A* search, guided by the Manhattan distance to the end.
+ * It finds a shortest path in any maze, and searches fewer nodes than
+ * breadth-first search when the path does not stray far from a straight line,
+ * as in mazes with many loops. In a perfect maze the path winds so much that
+ * the gain is small, and the heap makes each node more expensive.
+ * <p>
+ * The heap holds an entry for every time a node is reached, so in mazes with
+ * loops a node can be in it more than once.
+ */
+public class AStarSolver extends MazeSolver {
+    /*
+     * A heap entry packs the estimated length of a path through the node into
+     * the top 31 bits, the direction back to the node it was reached from
+     * into the next 2 and the node into the low 31. Entries compare as
+     * unsigned numbers.
+     */
+    private static final int DIRECTION_SHIFT = 31;
+    private static final int ESTIMATE_SHIFT = 33;
+    private static final long NODE_MASK = (1L << DIRECTION_SHIFT) - 1;
+
+    /* The estimates fit in 31 bits when there are at most 2^30 nodes. */
+    private static final long MAX_NODES = 1L << 30;
+
+    private long[] heap;
+    private int heapSize;
+
+    /** Creates a solver. */
+    public AStarSolver() {
+    }
+
+    @Override
+    long maxNodes() {
+        return MAX_NODES;
+    }
+
+    @Override
+    int[] search(int start, int end) {
+        byte[] cells = this.cells;
+        int[] offsets = this.offsets;
+        int width = this.width;
+        int endX = end % width;
+        int endY = end / width;
+        if (heap == null) {
+            heap = new long[1024];
+        }
+        heapSize = 0;
+        offer((long) distance(start % width, start / width, endX, endY) << ESTIMATE_SHIFT | start);
+
+        while (heapSize > 0) {
+            long entry = poll();
+            int i = (int) (entry & NODE_MASK);
+            if ((cells[i] & SEEN) != 0) {
+                continue;
+            }
+            /* The first entry of a node to leave the heap is on a shortest path. */
+            cells[i] |= SEEN | ((int) (entry >>> DIRECTION_SHIFT) & 3) << PARENT_SHIFT;
+            ++visitedCount;
+            if (i == end) {
+                return trace(start, end);
+            }
+
+            int x = i % width;
+            int y = i / width;
+            int length = (int) (entry >>> ESTIMATE_SHIFT) - distance(x, y, endX, endY) + 1;
+            int walls = cells[i];
+            for (int d = 0; d < 4; ++d) {
+                if ((walls & (1 << d)) != 0) {
+                    continue;
+                }
+                int n = i + offsets[d];
+                if ((cells[n] & SEEN) != 0) {
+                    continue;
+                }
+                int nx = (d == 1) ? x + 1 : (d == 3) ? x - 1 : x;
+                int ny = (d == 2) ? y + 1 : (d == 0) ? y - 1 : y;
+                long estimate = length + distance(nx, ny, endX, endY);
+                offer(estimate << ESTIMATE_SHIFT | (long) (d ^ 2) << DIRECTION_SHIFT | n);
+            }
+        }
+        return NO_PATH;
+    }
+
+    private static int distance(int x, int y, int endX, int endY) {
+        return Math.abs(x - endX) + Math.abs(y - endY);
+    }
+
+    private static boolean less(long a, long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+
+    private void offer(long entry) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length << 1);
+        }
+        long[] heap = this.heap;
+        int k = heapSize++;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (!less(entry, heap[parent])) {
+                break;
+            }
+            heap[k] = heap[parent];
+            k = parent;
+        }
+        heap[k] = entry;
+    }
+
+    private long poll() {
+        long[] heap = this.heap;
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int size = heapSize;
+        int k = 0;
+        int half = size >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                ++child;
+            }
+            if (!less(heap[child], last)) {
+                break;
+            }
+            heap[k] = heap[child];
+            k = child;
+        }
+        heap[k] = last;
+        return top;
+    }
+}
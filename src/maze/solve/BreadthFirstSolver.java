@@ -0,0 +1,17 @@
+package maze.solve;
+
+/**
+ * Solves a maze with breadth-first search, which finds a shortest path in any
+ * maze. In a perfect maze, where there is only one path, it searches about as
+ * many nodes as lie closer to the start than the end does.
+ */
+public class BreadthFirstSolver extends MazeSolver {
+    /** Creates a solver. */
+    public BreadthFirstSolver() {
+    }
+
+    @Override
+    int[] search(int start, int end) {
+        return breadthFirst(start, end);
+    }
+}
@@ -0,0 +1,82 @@
+package maze.solve;
+
+import java.util.Arrays;
+
+/**
+ * Solves a maze by dead-end filling. Every dead end other than the start and
+ * the end is walled off, which may turn its neighbor into a dead end in turn,
+ * until none are left. In a perfect maze only the path between the start and
+ * the end remains; in a maze with loops the loops remain too, and the path is
+ * then found among what is left with a breadth-first search.
+ * <p>
+ * Unlike a search, the filling looks at every node of the maze no matter
+ * where the start and the end are, so it is best suited to solving a maze
+ * between far-apart nodes or to finding what is left of a maze after its
+ * dead ends are removed.
+ */
+public class DeadEndFillingSolver extends MazeSolver {
+    /* Marks a node that has been filled or is waiting to be. */
+    private static final int FILLED = 1 << 7;
+
+    /* The dead ends waiting to be filled. */
+    private int[] stack;
+
+    /** Creates a solver. */
+    public DeadEndFillingSolver() {
+    }
+
+    @Override
+    int[] search(int start, int end) {
+        byte[] cells = this.cells;
+        int[] offsets = this.offsets;
+        int size = width * height;
+        if (stack == null) {
+            stack = new int[1024];
+        }
+        int[] stack = this.stack;
+        int top = 0;
+
+        /* Keeps the start and the end from being filled. */
+        cells[start] |= FILLED;
+        cells[end] |= FILLED;
+
+        for (int i = 0; i < size; ++i) {
+            if ((cells[i] & FILLED) == 0 && Integer.bitCount(cells[i] & 0xf) >= 3) {
+                cells[i] |= FILLED;
+                if (top == stack.length) {
+                    stack = grow(stack);
+                }
+                stack[top++] = i;
+
+                /* Fills the dead end, and any dead ends that it leaves behind. */
+                while (top > 0) {
+                    int j = stack[--top];
+                    int walls = cells[j];
+                    for (int d = 0; d < 4; ++d) {
+                        if ((walls & (1 << d)) != 0) {
+                            continue;
+                        }
+                        /* Walls off the passage from both sides. */
+                        int n = j + offsets[d];
+                        cells[j] |= 1 << d;
+                        cells[n] |= 1 << (d ^ 2);
+                        if ((cells[n] & FILLED) == 0 && Integer.bitCount(cells[n] & 0xf) >= 3) {
+                            cells[n] |= FILLED;
+                            if (top == stack.length) {
+                                stack = grow(stack);
+                            }
+                            stack[top++] = n;
+                        }
+                    }
+                }
+            }
+        }
+        this.stack = stack;
+        return breadthFirst(start, end);
+    }
+
+    private int[] grow(int[] stack) {
+        this.stack = Arrays.copyOf(stack, stack.length << 1);
+        return this.stack;
+    }
+}
@@ -0,0 +1,421 @@
+package maze.solve;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import maze.Maze;
+import maze.OutOfBoundsException;
+
+/**
+ * The distance from every node of a maze to the nearest of a set of sources,
+ * such as the goals or the enemies of a game. The field is computed by a
+ * breadth-first search from all of the sources at once, one level at a time,
+ * and large levels can be expanded in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * When only a few sources move, {@link #update(int[], int[])} repairs the
+ * field instead of computing it again. It only visits the nodes whose
+ * nearest source was removed, the nodes that come closer to an added source,
+ * and their neighbors.
+ * <p>
+ * Nodes are given by their index, {@code y * width + x}. The field copies the
+ * walls of the maze when it is created, and does not follow later changes to
+ * the maze. It is not thread-safe.
+ */
+public class DistanceField {
+    /** The distance of a node that cannot be reached from any source. */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /* Levels with fewer nodes than this are expanded without forking. */
+    private static final int SEQUENTIAL_LEVEL = 8192;
+
+    /* A level is split into chunks of at most this many nodes. */
+    private static final int CHUNK = 2048;
+
+    private final int width;
+    private final int height;
+    private final int[] offsets;
+    private final byte[] cells;
+    private final int[] distances;
+
+    /* The current and next level of a search, reused between searches. */
+    private int[] level = new int[1024];
+    private int[] nextLevel = new int[1024];
+
+    /**
+     * Creates a field for a maze. Every node is unreachable until the field
+     * is computed.
+     *
+     * @param  maze the maze
+     * @throws IllegalArgumentException if the maze has more nodes than an
+     *         array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public DistanceField(Maze maze) {
+        if (maze == null) {
+            throw new NullPointerException();
+        }
+        width = maze.getWidth();
+        height = maze.getHeight();
+        long size = (long) width * height;
+        if (size > MazeSolver.MAX_NODES) {
+            throw new IllegalArgumentException("Maze is too large for a distance field");
+        }
+        offsets = new int[] {-width, 1, width, -1};
+        cells = new byte[(int) size];
+        distances = new int[(int) size];
+        MazeSolver.copyWalls(maze, cells);
+        Arrays.fill(distances, UNREACHABLE);
+    }
+
+    /** Returns the width of the maze. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Returns the height of the maze. */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the distance from a node to the nearest source.
+     *
+     * @param  x the x-coordinate of the node
+     * @param  y the y-coordinate of the node
+     * @return the distance, or {@link #UNREACHABLE}
+     * @throws OutOfBoundsException if (x, y) is out of bounds
+     */
+    public int getDistance(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new OutOfBoundsException("(" + x + ", " + y + ")");
+        }
+        return distances[y * width + x];
+    }
+
+    /**
+     * Returns the distances of all nodes, indexed by node. The array belongs
+     * to the field: it changes when the field is computed or updated, and it
+     * must not be modified.
+     */
+    public int[] getDistances() {
+        return distances;
+    }
+
+    /**
+     * Computes the field for a set of sources, one node after the other.
+     *
+     * @param  sources the indices of the sources
+     * @throws IndexOutOfBoundsException if a source is not the index of a node
+     * @throws NullPointerException if sources is null
+     */
+    public void compute(int[] sources) {
+        compute(sources, null);
+    }
+
+    /**
+     * Computes the field for a set of sources, expanding large levels of the
+     * search in parallel on a pool.
+     *
+     * @param  sources the indices of the sources
+     * @param  pool the pool to run on
+     * @throws IndexOutOfBoundsException if a source is not the index of a node
+     * @throws NullPointerException if an argument is null
+     */
+    public void compute(int[] sources, ForkJoinPool pool) {
+        checkIndices(sources);
+        Arrays.fill(distances, UNREACHABLE);
+        int size = 0;
+        ensureLevel(sources.length);
+        for (int s : sources) {
+            if (distances[s] != 0) {
+                distances[s] = 0;
+                level[size++] = s;
+            }
+        }
+        for (int d = 1; size > 0; ++d) {
+            if (nextLevel.length < 4L * size) {
+                nextLevel = new int[(int) Math.min(4L * size, MazeSolver.MAX_NODES)];
+            }
+            if (pool == null || size < SEQUENTIAL_LEVEL) {
+                size = expand(level, 0, size, d, nextLevel, 0);
+            } else {
+                AtomicInteger nextSize = new AtomicInteger();
+                pool.invoke(new Expand(this, level, 0, size, d, nextLevel, nextSize));
+                size = nextSize.get();
+            }
+            int[] t = level;
+            level = nextLevel;
+            nextLevel = t;
+        }
+    }
+
+    /**
+     * Expands the nodes in [from, to) of a level: gives each unreached
+     * neighbor the distance d and puts it into out, starting at offset.
+     * Returns the position in out after the last node put.
+     * <p>
+     * When chunks of a level run in parallel, two of them may reach the same
+     * node at once. Both then write the same distance and both put the node
+     * into the next level, which costs a little work but is otherwise
+     * harmless.
+     */
+    private int expand(int[] level, int from, int to, int d, int[] out, int offset) {
+        byte[] cells = this.cells;
+        int[] distances = this.distances;
+        int[] offsets = this.offsets;
+        int k = offset;
+        for (int p = from; p < to; ++p) {
+            int i = level[p];
+            int walls = cells[i];
+            for (int dir = 0; dir < 4; ++dir) {
+                if ((walls & (1 << dir)) == 0) {
+                    int n = i + offsets[dir];
+                    if (distances[n] == UNREACHABLE) {
+                        distances[n] = d;
+                        out[k++] = n;
+                    }
+                }
+            }
+        }
+        return k;
+    }
+
+    /** Expands a range of a level by splitting it into chunks. */
+    private static class Expand extends RecursiveAction {
+        private static final long serialVersionUID = 6530391861947237735L;
+
+        private final DistanceField field;
+        private final int[] level;
+        private final int from;
+        private final int to;
+        private final int d;
+        private final int[] out;
+        private final AtomicInteger outSize;
+
+        Expand(DistanceField field, int[] level, int from, int to, int d, int[] out,
+                AtomicInteger outSize) {
+            this.field = field;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+            this.d = d;
+            this.out = out;
+            this.outSize = outSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                /* Collects the chunk's nodes, then copies them out in one go. */
+                int[] found = new int[4 * (to - from)];
+                int count = field.expand(level, from, to, d, found, 0);
+                System.arraycopy(found, 0, out, outSize.getAndAdd(count), count);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Expand(field, level, from, mid, d, out, outSize),
+                    new Expand(field, level, mid, to, d, out, outSize));
+        }
+    }
+
+    /**
+     * Moves a single source.
+     *
+     * @param  from the index of the source to move
+     * @param  to the index of the node to move it to
+     * @throws IllegalArgumentException if from is not a source
+     * @throws IndexOutOfBoundsException if from or to is not the index of a
+     *         node
+     */
+    public void moveSource(int from, int to) {
+        update(new int[] {from}, new int[] {to});
+    }
+
+    /**
+     * Removes some sources and adds others, and repairs the field to match.
+     * A node may be both removed and added, in which case it stays a source.
+     * This visits the nodes that come closer to an added source, the nodes
+     * whose nearest source was removed, and their neighbors, so it is much
+     * faster than computing the field again when the sources that change are
+     * few and each is the nearest source of a small part of the maze.
+     *
+     * @param  removed the indices of the sources to remove
+     * @param  added the indices of the sources to add
+     * @throws IllegalArgumentException if a node to be removed is not a source
+     * @throws IndexOutOfBoundsException if an index is not the index of a node
+     * @throws NullPointerException if an argument is null
+     */
+    public void update(int[] removed, int[] added) {
+        checkIndices(removed);
+        checkIndices(added);
+        for (int r : removed) {
+            if (distances[r] != 0) {
+                throw new IllegalArgumentException("Node " + r + " is not a source");
+            }
+        }
+        byte[] cells = this.cells;
+        int[] distances = this.distances;
+        int[] offsets = this.offsets;
+        int[] kept = added.clone();
+        Arrays.sort(kept);
+
+        /*
+         * Adds the sources first, searching breadth-first from them through
+         * the nodes that come closer. The field is then right for the old
+         * sources and the added ones together.
+         */
+        int[] queue = ensureLevel(added.length);
+        int tail = 0;
+        for (int a : added) {
+            if (distances[a] != 0) {
+                distances[a] = 0;
+                queue[tail++] = a;
+            }
+        }
+        for (int head = 0; head < tail; ++head) {
+            int i = queue[head];
+            int d = distances[i] + 1;
+            int walls = cells[i];
+            for (int dir = 0; dir < 4; ++dir) {
+                if ((walls & (1 << dir)) == 0) {
+                    int n = i + offsets[dir];
+                    if (d < distances[n]) {
+                        distances[n] = d;
+                        if (tail == queue.length) {
+                            queue = level = Arrays.copyOf(queue, queue.length << 1);
+                        }
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        }
+
+        /*
+         * Invalidates the nodes that depended on the removed sources, level
+         * by level. A node one step further than an invalidated node stays
+         * valid if another neighbor is one step closer than it and valid.
+         * The invalidated nodes are collected in the region.
+         */
+        int[] region = queue;
+        int regionSize = 0;
+        for (int r : removed) {
+            if (distances[r] == 0 && Arrays.binarySearch(kept, r) < 0) {
+                distances[r] = UNREACHABLE;
+                region[regionSize++] = r;
+            }
+        }
+        int levelStart = 0;
+        for (int d = 1; levelStart < regionSize; ++d) {
+            int levelEnd = regionSize;
+            for (int p = levelStart; p < levelEnd; ++p) {
+                int i = region[p];
+                int walls = cells[i];
+                for (int dir = 0; dir < 4; ++dir) {
+                    if ((walls & (1 << dir)) != 0) {
+                        continue;
+                    }
+                    int n = i + offsets[dir];
+                    if (distances[n] != d || hasSupport(n, d - 1)) {
+                        continue;
+                    }
+                    distances[n] = UNREACHABLE;
+                    if (regionSize == region.length) {
+                        region = level = Arrays.copyOf(region, region.length << 1);
+                    }
+                    region[regionSize++] = n;
+                }
+            }
+            levelStart = levelEnd;
+        }
+        if (regionSize == 0) {
+            return;
+        }
+
+        /*
+         * Seeds the repair with the valid neighbors of the region, which keep
+         * their distances. Each seed packs its distance above its index so
+         * that sorting orders them by distance.
+         */
+        long[] seeds = new long[16];
+        int seedCount = 0;
+        for (int p = 0; p < regionSize; ++p) {
+            int i = region[p];
+            int walls = cells[i];
+            for (int dir = 0; dir < 4; ++dir) {
+                if ((walls & (1 << dir)) != 0) {
+                    continue;
+                }
+                int n = i + offsets[dir];
+                if (distances[n] != UNREACHABLE) {
+                    if (seedCount == seeds.length) {
+                        seeds = Arrays.copyOf(seeds, seeds.length << 1);
+                    }
+                    seeds[seedCount++] = (long) distances[n] << 32 | n;
+                }
+            }
+        }
+        Arrays.sort(seeds, 0, seedCount);
+
+        /*
+         * Searches breadth-first from the seeds, taking each seed once the
+         * queue has no closer node. The queue holds nodes in order of
+         * distance, so the seeds and the queue merge in order, and each node
+         * of the region is reached once, at its final distance.
+         */
+        queue = nextLevel;
+        int head = 0;
+        tail = 0;
+        int s = 0;
+        while (s < seedCount || head < tail) {
+            int i;
+            if (s < seedCount && (head == tail || (int) (seeds[s] >>> 32) <= distances[queue[head]])) {
+                i = (int) seeds[s++];
+            } else {
+                i = queue[head++];
+            }
+            int d = distances[i] + 1;
+            int walls = cells[i];
+            for (int dir = 0; dir < 4; ++dir) {
+                if ((walls & (1 << dir)) == 0) {
+                    int n = i + offsets[dir];
+                    if (distances[n] == UNREACHABLE) {
+                        distances[n] = d;
+                        if (tail == queue.length) {
+                            queue = nextLevel = Arrays.copyOf(queue, queue.length << 1);
+                        }
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Checks if a node has a neighbor at distance d across an open wall. */
+    private boolean hasSupport(int i, int d) {
+        int walls = cells[i];
+        for (int dir = 0; dir < 4; ++dir) {
+            if ((walls & (1 << dir)) == 0 && distances[i + offsets[dir]] == d) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the array of the current level, grown to hold size nodes. */
+    private int[] ensureLevel(int size) {
+        if (level.length < size) {
+            level = new int[size];
+        }
+        return level;
+    }
+
+    private void checkIndices(int[] indices) {
+        for (int i : indices) {
+            if (i < 0 || i >= distances.length) {
+                throw new IndexOutOfBoundsException("Index " + i);
+            }
+        }
+    }
+}
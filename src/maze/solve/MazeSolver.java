@@ -0,0 +1,231 @@
+package maze.solve;
+
+import maze.Direction;
+import maze.Maze;
+import maze.OutOfBoundsException;
+import maze.coordinates.Point;
+
+/**
+ * Finds a path between two nodes of a {@link Maze}. A solver copies the walls
+ * of the maze into a byte per node, which it also uses to label nodes while
+ * searching, so a solve takes a byte per node plus a queue or heap that grows
+ * with the search front. The bytes are kept and reused by the next solve of a
+ * maze that is no larger.
+ * <p>
+ * Nodes are given by their index, {@code y * width + x}. A path is returned
+ * as the indices of its nodes, from the start to the end. The border is
+ * treated as walled off even if the maze has openings in it.
+ * <p>
+ * Solvers are not thread-safe.
+ */
+public abstract class MazeSolver {
+    /* The largest number of nodes a solver can handle. */
+    static final int MAX_NODES = Integer.MAX_VALUE - 8;
+
+    /* The high bits of a node: its parent's direction and whether it is seen. */
+    static final int PARENT_SHIFT = 4;
+    static final int SEEN = 1 << 6;
+
+    /* The result when there is no path. */
+    static final int[] NO_PATH = new int[0];
+
+    /* The walls of each node in the low four bits, and its labels. */
+    byte[] cells;
+    int width;
+    int height;
+
+    /* The offsets of the neighbors of a node, indexed by direction ordinal. */
+    final int[] offsets = new int[4];
+
+    /* The queue of the breadth-first search. */
+    private int[] queue;
+
+    /* The number of nodes taken off the queue or heap by the last solve. */
+    long visitedCount;
+
+    MazeSolver() {
+    }
+
+    /**
+     * Finds a path between two nodes.
+     *
+     * @param  maze the maze to solve
+     * @param  startX the x-coordinate of the start
+     * @param  startY the y-coordinate of the start
+     * @param  endX the x-coordinate of the end
+     * @param  endY the y-coordinate of the end
+     * @return the indices of the nodes of the path, or an empty array if the
+     *         end cannot be reached from the start
+     * @throws IllegalArgumentException if the maze has too many nodes for
+     *         this solver
+     * @throws OutOfBoundsException if the start or the end is out of bounds
+     * @throws NullPointerException if maze is null
+     */
+    public int[] solve(Maze maze, int startX, int startY, int endX, int endY) {
+        if (maze == null) {
+            throw new NullPointerException();
+        }
+        checkBounds(maze, startX, startY);
+        checkBounds(maze, endX, endY);
+        load(maze);
+        visitedCount = 0;
+        return search(startY * width + startX, endY * width + endX);
+    }
+
+    /**
+     * Finds a path between two nodes.
+     *
+     * @param  maze the maze to solve
+     * @param  start the start
+     * @param  end the end
+     * @return the indices of the nodes of the path, or an empty array if the
+     *         end cannot be reached from the start
+     * @throws IllegalArgumentException if the maze has too many nodes for
+     *         this solver
+     * @throws OutOfBoundsException if the start or the end is out of bounds
+     * @throws NullPointerException if an argument is null
+     */
+    public int[] solve(Maze maze, Point start, Point end) {
+        return solve(maze, start.getX(), start.getY(), end.getX(), end.getY());
+    }
+
+    /**
+     * Returns the number of nodes the last solve took off its queue or heap,
+     * a measure of how much of the maze it had to search.
+     */
+    public long getVisitedCount() {
+        return visitedCount;
+    }
+
+    /** Returns the largest number of nodes this solver can handle. */
+    long maxNodes() {
+        return MAX_NODES;
+    }
+
+    /** Searches the loaded maze for a path between two node indices. */
+    abstract int[] search(int start, int end);
+
+    private static void checkBounds(Maze maze, int x, int y) {
+        if (x < 0 || x >= maze.getWidth() || y < 0 || y >= maze.getHeight()) {
+            throw new OutOfBoundsException("(" + x + ", " + y + ")");
+        }
+    }
+
+    /** Copies the walls of a maze and walls off its border. */
+    private void load(Maze maze) {
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        long size = (long) width * height;
+        if (size > maxNodes()) {
+            throw new IllegalArgumentException("Maze is too large to solve");
+        }
+        if (cells == null || cells.length < size) {
+            /* Lets the old array go before allocating the new one. */
+            cells = null;
+            cells = new byte[(int) size];
+        }
+        copyWalls(maze, cells);
+        this.width = width;
+        this.height = height;
+        offsets[0] = -width;
+        offsets[1] = 1;
+        offsets[2] = width;
+        offsets[3] = -1;
+    }
+
+    /**
+     * Copies the walls of a maze into the low bits of a byte per node, in
+     * row-major order, and walls off the border.
+     */
+    static void copyWalls(Maze maze, byte[] cells) {
+        int width = maze.getWidth();
+        int height = maze.getHeight();
+        for (int y = 0; y < height; ++y) {
+            maze.copyRow(y, cells, y * width);
+        }
+        int last = (height - 1) * width;
+        for (int x = 0; x < width; ++x) {
+            cells[x] |= Direction.NORTH.mask;
+            cells[last + x] |= Direction.SOUTH.mask;
+        }
+        for (int i = 0; i <= last; i += width) {
+            cells[i] |= Direction.WEST.mask;
+            cells[i + width - 1] |= Direction.EAST.mask;
+        }
+    }
+
+    /**
+     * Searches breadth-first from start until end is seen, following the
+     * open walls of the loaded cells. Marks each node it sees with its
+     * parent's direction.
+     */
+    int[] breadthFirst(int start, int end) {
+        byte[] cells = this.cells;
+        int[] offsets = this.offsets;
+        if (queue == null) {
+            queue = new int[1024];
+        }
+        int[] queue = this.queue;
+        int mask = queue.length - 1;
+        int head = 0;
+        int size = 1;
+        queue[0] = start;
+        cells[start] |= SEEN;
+
+        while (size > 0) {
+            int i = queue[head];
+            head = (head + 1) & mask;
+            --size;
+            ++visitedCount;
+            if (i == end) {
+                return trace(start, end);
+            }
+            int walls = cells[i];
+            for (int d = 0; d < 4; ++d) {
+                if ((walls & (1 << d)) != 0) {
+                    continue;
+                }
+                int n = i + offsets[d];
+                if ((cells[n] & SEEN) != 0) {
+                    continue;
+                }
+                /* Saves the direction back to i, the reverse of d. */
+                cells[n] |= SEEN | ((d ^ 2) << PARENT_SHIFT);
+                if (size == queue.length) {
+                    queue = grow(queue, head);
+                    this.queue = queue;
+                    mask = queue.length - 1;
+                    head = 0;
+                }
+                queue[(head + size) & mask] = n;
+                ++size;
+            }
+        }
+        return NO_PATH;
+    }
+
+    /** Doubles a full ring buffer, moving its elements to the front. */
+    private static int[] grow(int[] queue, int head) {
+        int[] grown = new int[queue.length << 1];
+        System.arraycopy(queue, head, grown, 0, queue.length - head);
+        System.arraycopy(queue, 0, grown, queue.length - head, head);
+        return grown;
+    }
+
+    /** Follows the saved parent directions back from end to start. */
+    int[] trace(int start, int end) {
+        byte[] cells = this.cells;
+        int length = 1;
+        for (int i = end; i != start; i += offsets[(cells[i] >> PARENT_SHIFT) & 3]) {
+            ++length;
+        }
+        int[] path = new int[length];
+        int i = end;
+        for (int k = length - 1; k > 0; --k) {
+            path[k] = i;
+            i += offsets[(cells[i] >> PARENT_SHIFT) & 3];
+        }
+        path[0] = start;
+        return path;
+    }
+}
@@ -0,0 +1,247 @@
+package maze.solve;
+
+import maze.Maze;
+import maze.OutOfBoundsException;
+import maze.coordinates.Point;
+
+/**
+ * Answers distance and path queries between any two nodes of a perfect maze,
+ * one in which there is exactly one path between any two nodes. The maze is
+ * a tree, which the index roots at the top-left node. Each node keeps its
+ * depth and a jump pointer to an ancestor, chosen so that any ancestor can be
+ * reached in a logarithmic number of jumps. This finds the lowest common
+ * ancestor of two nodes, and with it their distance, in O(log n) time, while
+ * taking only nine bytes per node, against the O(n log n) words of a sparse
+ * table or of binary lifting.
+ * <p>
+ * Nodes are given by their index, {@code y * width + x}. The index is built
+ * from the walls of the maze when it is created, and does not follow later
+ * changes to the maze.
+ */
+public class PathIndex {
+    /* The parent's direction in bits 4 and 5 of a node, and whether it is seen. */
+    private static final int PARENT_SHIFT = MazeSolver.PARENT_SHIFT;
+    private static final int SEEN = MazeSolver.SEEN;
+
+    private final int width;
+    private final int height;
+    private final int[] offsets;
+
+    /* The walls and parent's direction of each node. */
+    private final byte[] cells;
+    private final int[] depth;
+    private final int[] jump;
+
+    /**
+     * Builds the index of a maze.
+     *
+     * @param  maze the maze to index
+     * @throws IllegalArgumentException if the maze is not a perfect maze or
+     *         if it has more nodes than an array can hold
+     * @throws NullPointerException if maze is null
+     */
+    public PathIndex(Maze maze) {
+        if (maze == null) {
+            throw new NullPointerException();
+        }
+        width = maze.getWidth();
+        height = maze.getHeight();
+        long size = (long) width * height;
+        if (size > MazeSolver.MAX_NODES) {
+            throw new IllegalArgumentException("Maze is too large to index");
+        }
+        offsets = new int[] {-width, 1, width, -1};
+        cells = new byte[(int) size];
+        depth = new int[(int) size];
+        jump = new int[(int) size];
+        MazeSolver.copyWalls(maze, cells);
+        build();
+    }
+
+    /**
+     * Walks the maze breadth-first from the root, so that every node is seen
+     * after its parent, and sets the depth and jump pointer of each node.
+     */
+    private void build() {
+        byte[] cells = this.cells;
+        int[] depth = this.depth;
+        int[] jump = this.jump;
+        int[] queue = new int[1024];
+        int mask = queue.length - 1;
+        int head = 0;
+        int size = 1;
+        int seen = 1;
+        cells[0] |= SEEN;
+
+        while (size > 0) {
+            int i = queue[head];
+            head = (head + 1) & mask;
+            --size;
+            int walls = cells[i];
+            for (int d = 0; d < 4; ++d) {
+                if ((walls & (1 << d)) != 0) {
+                    continue;
+                }
+                int n = i + offsets[d];
+                if ((cells[n] & SEEN) != 0) {
+                    if (i != 0 && n == parent(i)) {
+                        continue;
+                    }
+                    throw new IllegalArgumentException("Maze has a loop at node " + n);
+                }
+                cells[n] |= SEEN | ((d ^ 2) << PARENT_SHIFT);
+                depth[n] = depth[i] + 1;
+
+                /*
+                 * Jumps twice as far as the parent's jump if the parent's
+                 * jump and its jump's jump are as long as each other, and
+                 * to the parent otherwise.
+                 */
+                int j = jump[i];
+                jump[n] = (depth[i] - depth[j] == depth[j] - depth[jump[j]]) ? jump[j] : i;
+
+                if (size == queue.length) {
+                    int[] grown = new int[queue.length << 1];
+                    System.arraycopy(queue, head, grown, 0, queue.length - head);
+                    System.arraycopy(queue, 0, grown, queue.length - head, head);
+                    queue = grown;
+                    mask = queue.length - 1;
+                    head = 0;
+                }
+                queue[(head + size) & mask] = n;
+                ++size;
+                ++seen;
+            }
+        }
+        if (seen != cells.length) {
+            throw new IllegalArgumentException("Maze is not connected");
+        }
+    }
+
+    /** Returns the width of the indexed maze. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** Returns the height of the indexed maze. */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of steps on the path between two nodes.
+     *
+     * @param  a the index of a node
+     * @param  b the index of another node
+     * @return the distance between a and b
+     * @throws IndexOutOfBoundsException if a or b is not the index of a node
+     */
+    public int distance(int a, int b) {
+        checkIndex(a);
+        checkIndex(b);
+        return depth[a] + depth[b] - 2 * depth[lowestCommonAncestor(a, b)];
+    }
+
+    /**
+     * Returns the number of steps on the path between two nodes.
+     *
+     * @param  a the coordinates of a node
+     * @param  b the coordinates of another node
+     * @return the distance between a and b
+     * @throws OutOfBoundsException if a or b is out of bounds
+     * @throws NullPointerException if an argument is null
+     */
+    public int distance(Point a, Point b) {
+        return distance(index(a), index(b));
+    }
+
+    /**
+     * Returns the path between two nodes, as the indices of its nodes from a
+     * to b. Takes time proportional to the length of the path.
+     *
+     * @param  a the index of the first node of the path
+     * @param  b the index of the last node of the path
+     * @return the path from a to b
+     * @throws IndexOutOfBoundsException if a or b is not the index of a node
+     */
+    public int[] path(int a, int b) {
+        checkIndex(a);
+        checkIndex(b);
+        int ancestor = lowestCommonAncestor(a, b);
+        int up = depth[a] - depth[ancestor];
+        int[] path = new int[up + depth[b] - depth[ancestor] + 1];
+
+        /* Climbs from a to the ancestor, and from b to it from the other end. */
+        int k = 0;
+        for (int i = a; i != ancestor; i = parent(i)) {
+            path[k++] = i;
+        }
+        path[k] = ancestor;
+        k = path.length - 1;
+        for (int i = b; i != ancestor; i = parent(i)) {
+            path[k--] = i;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the path between two nodes, as the indices of its nodes from a
+     * to b. Takes time proportional to the length of the path.
+     *
+     * @param  a the coordinates of the first node of the path
+     * @param  b the coordinates of the last node of the path
+     * @return the path from a to b
+     * @throws OutOfBoundsException if a or b is out of bounds
+     * @throws NullPointerException if an argument is null
+     */
+    public int[] path(Point a, Point b) {
+        return path(index(a), index(b));
+    }
+
+    private int parent(int i) {
+        return i + offsets[(cells[i] >> PARENT_SHIFT) & 3];
+    }
+
+    private int lowestCommonAncestor(int a, int b) {
+        int[] depth = this.depth;
+        int[] jump = this.jump;
+        if (depth[a] < depth[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+
+        /* Climbs from the deeper node to the depth of the other. */
+        int target = depth[b];
+        while (depth[a] > target) {
+            a = (depth[jump[a]] >= target) ? jump[a] : parent(a);
+        }
+
+        /* Climbs from both until they meet, jumping while the jumps differ. */
+        while (a != b) {
+            if (jump[a] != jump[b]) {
+                a = jump[a];
+                b = jump[b];
+            } else {
+                a = parent(a);
+                b = parent(b);
+            }
+        }
+        return a;
+    }
+
+    private int index(Point p) {
+        int x = p.getX();
+        int y = p.getY();
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new OutOfBoundsException("(" + x + ", " + y + ")");
+        }
+        return y * width + x;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= cells.length) {
+            throw new IndexOutOfBoundsException("Index " + i);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package maze.storage;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import maze.Direction;
+
+/**
+ * Stores each node in a byte of a heap array, in row-major order. The low four
+ * bits hold the walls of the node and the high four bits hold its flags, so a
+ * wall shared by two nodes is stored twice. This is the fastest storage and
+ * the default for {@link maze.Maze}.
+ */
+public class ByteStorage extends MazeStorage implements Serializable {
+    private static final long serialVersionUID = -2836877708133323045L;
+
+    /* Reads eight nodes at a time for the bulk operations. */
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] b;
+
+    /* The offsets of the neighbors of a node, indexed by direction ordinal. */
+    private final int[] offsets;
+
+    /**
+     * Sets the dimensions of the storage.
+     *
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive or
+     *         if the maze has more nodes than an array can hold
+     */
+    public ByteStorage(int width, int height) {
+        super(width, height);
+        if (getSize() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large for a byte array");
+        }
+        b = new byte[width * height];
+        offsets = new int[] {-width, 1, width, -1};
+    }
+
+    @Override
+    public int getWalls(int x, int y) {
+        return b[y * getWidth() + x] & WALL_MASK;
+    }
+
+    @Override
+    public boolean isWall(int x, int y, Direction d) {
+        return (b[y * getWidth() + x] & d.mask) != 0;
+    }
+
+    @Override
+    public void addWall(int x, int y, Direction d) {
+        int width = getWidth();
+        b[y * width + x] |= d.mask;
+        int tx = x + d.dx;
+        int ty = y + d.dy;
+        if (tx >= 0 && tx < width && ty >= 0 && ty < getHeight()) {
+            b[ty * width + tx] |= d.getReverse().mask;
+        }
+    }
+
+    @Override
+    public void removeWall(int x, int y, Direction d) {
+        int width = getWidth();
+        b[y * width + x] &= ~d.mask;
+        int tx = x + d.dx;
+        int ty = y + d.dy;
+        if (tx >= 0 && tx < width && ty >= 0 && ty < getHeight()) {
+            b[ty * width + tx] &= ~d.getReverse().mask;
+        }
+    }
+
+    @Override
+    public void addBorder() {
+        int width = getWidth();
+        int height = getHeight();
+        for (int y = 0; y < height; ++y) {
+            b[y * width] |= Direction.WEST.mask;
+            b[(y + 1) * width - 1] |= Direction.EAST.mask;
+        }
+        for (int x = 0; x < width; ++x) {
+            b[x] |= Direction.NORTH.mask;
+            b[(height - 1) * width + x] |= Direction.SOUTH.mask;
+        }
+    }
+
+    @Override
+    public void fill() {
+        Arrays.fill(b, (byte) WALL_MASK);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(b, (byte) 0);
+    }
+
+    @Override
+    public int getWalls(long i) {
+        return b[(int) i] & WALL_MASK;
+    }
+
+    @Override
+    public boolean isWall(long i, Direction d) {
+        return (b[(int) i] & d.mask) != 0;
+    }
+
+    @Override
+    public void addWall(long i, Direction d) {
+        int j = (int) i;
+        b[j] |= d.mask;
+        b[j + offsets[d.ordinal()]] |= reverseMask(d);
+    }
+
+    @Override
+    public void removeWall(long i, Direction d) {
+        int j = (int) i;
+        b[j] &= ~d.mask;
+        b[j + offsets[d.ordinal()]] &= ~reverseMask(d);
+    }
+
+    @Override
+    public int getFlags(long i) {
+        return (b[(int) i] >> 4) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(long i, int flags) {
+        int j = (int) i;
+        b[j] = (byte) ((b[j] & WALL_MASK) | (flags << 4));
+    }
+
+    @Override
+    public void copyRow(int y, byte[] dst, int offset) {
+        int width = getWidth();
+        int row = y * width;
+        for (int x = 0; x < width; ++x) {
+            dst[offset + x] = (byte) (b[row + x] & WALL_MASK);
+        }
+    }
+
+    @Override
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(b).asReadOnlyBuffer();
+    }
+
+    /** Clears the flags, which share their bytes with the walls. */
+    @Override
+    public void releaseFlags() {
+        for (int i = 0; i < b.length; ++i) {
+            b[i] &= WALL_MASK;
+        }
+    }
+
+    private long word(int i) {
+        return (long) LONGS.get(b, i);
+    }
+
+    @Override
+    public long countWalls(Direction d) {
+        int mask = d.mask;
+        long count = 0;
+        int i = 0;
+        for (; i <= b.length - 8; i += 8) {
+            count += Swar.countWalls(word(i), mask);
+        }
+        for (; i < b.length; ++i) {
+            if ((b[i] & mask) != 0) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long countDeadEnds() {
+        long count = 0;
+        int i = 0;
+        for (; i <= b.length - 8; i += 8) {
+            count += Swar.countDeadEnds(word(i));
+        }
+        for (; i < b.length; ++i) {
+            if (Swar.isDeadEnd(b[i])) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        int width = getWidth();
+        int height = getHeight();
+
+        /* Compares the east wall of each node with the west wall of the next. */
+        for (int y = 0; y < height; ++y) {
+            int row = y * width;
+            int x = 0;
+            for (; x <= width - 9; x += 8) {
+                if ((((word(row + x) >>> 1) ^ (word(row + x + 1) >>> 3)) & Swar.ONES) != 0) {
+                    return false;
+                }
+            }
+            for (; x < width - 1; ++x) {
+                if ((((b[row + x] >>> 1) ^ (b[row + x + 1] >>> 3)) & 1) != 0) {
+                    return false;
+                }
+            }
+        }
+
+        /* Compares the south wall of each node with the north wall below. */
+        int end = (height - 1) * width;
+        int i = 0;
+        for (; i <= end - 8; i += 8) {
+            if ((((word(i) >>> 2) ^ word(i + width)) & Swar.ONES) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; ++i) {
+            if ((((b[i] >>> 2) ^ b[i + width]) & 1) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Override
+    public int getFlags(int x, int y) {
+        /* Mask is required b/c of sign extension from widening conversion. */
+        return (b[y * getWidth() + x] >> 4) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(int x, int y, int flags) {
+        int i = y * getWidth() + x;
+        b[i] = (byte) ((b[i] & WALL_MASK) | (flags << 4));
+    }
+}
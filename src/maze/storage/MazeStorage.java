@@ -0,0 +1,272 @@
+package maze.storage;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import maze.Direction;
+
+/**
+ * Holds the walls and flag bits of the nodes of a maze. A {@link maze.Maze}
+ * delegates all reads and writes to its storage, so the storage decides how
+ * the maze is laid out in memory.
+ * <p>
+ * Every node has four walls, given as a mask of {@link Direction#mask} bits,
+ * and four flag bits that generators use to label nodes. The wall between
+ * two neighboring nodes is shared: adding or removing it is visible from both
+ * sides. Coordinates passed to a storage are not checked; it is up to the
+ * caller to keep them in bounds.
+ * <p>
+ * Nodes can also be addressed by index, where the index of (x, y) is
+ * {@code y * width + x}. The index methods are meant for the hot loops of
+ * generators: they do not check the index, and the ones that change a wall
+ * require the neighbor that shares it to exist. Their default
+ * implementations convert the index to coordinates, which storages override
+ * with direct access.
+ */
+public abstract class MazeStorage implements Serializable {
+    private static final long serialVersionUID = -1937528911430526232L;
+
+    /** The mask of all four wall bits. */
+    protected static final int WALL_MASK = 0xf;
+
+    /* The masks of the reverse of each direction, indexed by ordinal. */
+    private static final int[] REVERSE_MASKS = {
+        Direction.SOUTH.mask, Direction.WEST.mask, Direction.NORTH.mask, Direction.EAST.mask
+    };
+
+    private final int width;
+    private final int height;
+
+    /* Divides indices below 2^32 by the width: ceil(2^64 / width), unsigned. */
+    private final long reciprocal;
+
+    /**
+     * Sets the dimensions of the storage.
+     *
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive
+     */
+    protected MazeStorage(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        reciprocal = Long.divideUnsigned(-1L, width) + 1;
+    }
+
+    /** Returns the width of the maze. */
+    public final int getWidth() {
+        return width;
+    }
+
+    /** Returns the height of the maze. */
+    public final int getHeight() {
+        return height;
+    }
+
+    /** Returns the number of nodes in the maze. */
+    public final long getSize() {
+        return (long) width * height;
+    }
+
+    /** Returns the walls of a node as a mask of direction bits. */
+    public abstract int getWalls(int x, int y);
+
+    /** Checks for the presence of a wall at a node. */
+    public abstract boolean isWall(int x, int y, Direction d);
+
+    /** Adds a wall to a node and to the neighbor that shares it, if any. */
+    public abstract void addWall(int x, int y, Direction d);
+
+    /** Removes a wall from a node and from the neighbor that shares it, if any. */
+    public abstract void removeWall(int x, int y, Direction d);
+
+    /** Puts walls on the border. */
+    public abstract void addBorder();
+
+    /** Puts walls everywhere and resets all flags to zero. */
+    public abstract void fill();
+
+    /** Removes all walls and resets all flags to zero. */
+    public abstract void clear();
+
+    /** Returns the flag bits for a node. */
+    public abstract int getFlags(int x, int y);
+
+    /** Sets the flag bits for a node. Only the low four bits are kept. */
+    public abstract void setFlags(int x, int y, int flags);
+
+    /** Returns the walls of the node at an index as a mask of direction bits. */
+    public int getWalls(long i) {
+        return getWalls(x(i), y(i));
+    }
+
+    /** Checks for the presence of a wall at the node at an index. */
+    public boolean isWall(long i, Direction d) {
+        return isWall(x(i), y(i), d);
+    }
+
+    /**
+     * Adds a wall to the node at an index and to the neighbor that shares it,
+     * which must exist.
+     */
+    public void addWall(long i, Direction d) {
+        addWall(x(i), y(i), d);
+    }
+
+    /**
+     * Removes a wall from the node at an index and from the neighbor that
+     * shares it, which must exist.
+     */
+    public void removeWall(long i, Direction d) {
+        removeWall(x(i), y(i), d);
+    }
+
+    /** Returns the flag bits for the node at an index. */
+    public int getFlags(long i) {
+        return getFlags(x(i), y(i));
+    }
+
+    /** Sets the flag bits for the node at an index. */
+    public void setFlags(long i, int flags) {
+        setFlags(x(i), y(i), flags);
+    }
+
+    private int x(long i) {
+        return (int) (i - row(i) * width);
+    }
+
+    private int y(long i) {
+        return (int) row(i);
+    }
+
+    /**
+     * Returns the row of the node at an index. Indices below 2^32 are divided
+     * by multiplying with the reciprocal of the width, which is exact for them
+     * and much faster than a division.
+     */
+    protected final long row(long i) {
+        if ((i >>> 32) != 0 || reciprocal == 0) {
+            return i / width;
+        }
+        long high = Math.multiplyHigh(reciprocal, i);
+        return (reciprocal < 0) ? high + i : high;
+    }
+
+    /**
+     * Copies the walls of a row of nodes into an array, one mask of direction
+     * bits per byte. The default implementation reads the nodes one by one.
+     *
+     * @param y      the y-coordinate of the row
+     * @param dst    the array to copy into
+     * @param offset the position in dst of the first node of the row
+     */
+    public void copyRow(int y, byte[] dst, int offset) {
+        for (int x = 0; x < width; ++x) {
+            dst[offset + x] = (byte) getWalls(x, y);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the nodes, one byte per node in row-major
+     * order, for storages that are laid out that way. The low four bits of
+     * each byte hold the walls of the node. The high four bits hold its
+     * flags, which are zero once the flags have been released. The view
+     * follows later changes to the storage. The default implementation
+     * throws an exception.
+     *
+     * @throws UnsupportedOperationException if the nodes are not laid out
+     *         as a single run of bytes in row-major order
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not keep one byte per node in row-major order");
+    }
+
+    /**
+     * Returns the number of nodes that have a wall in a direction. The
+     * default implementation checks the nodes one by one, which storages
+     * override with word-at-a-time counting.
+     *
+     * @throws NullPointerException if d is null
+     */
+    public long countWalls(Direction d) {
+        if (d == null) {
+            throw new NullPointerException();
+        }
+        long count = 0;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                if (isWall(x, y, d)) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Returns the number of dead ends, nodes with exactly three walls. */
+    public long countDeadEnds() {
+        long count = 0;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                if (Integer.bitCount(getWalls(x, y)) == 3) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks that every wall shared by two neighbors is either present at
+     * both or at neither. Storages that keep a shared wall twice can fall out
+     * of step if their memory is written to directly, for example through a
+     * mapped file.
+     */
+    public boolean isSymmetric() {
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                if (x < width - 1
+                        && isWall(x, y, Direction.EAST) != isWall(x + 1, y, Direction.WEST)) {
+                    return false;
+                }
+                if (y < height - 1
+                        && isWall(x, y, Direction.SOUTH) != isWall(x, y + 1, Direction.NORTH)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Returns the mask of the reverse of a direction. */
+    protected static int reverseMask(Direction d) {
+        return REVERSE_MASKS[d.ordinal()];
+    }
+
+    /**
+     * Checks if different threads may write to different nodes at the same
+     * time without synchronization. Storages that pack several nodes into a
+     * word must return false. The default implementation returns false.
+     */
+    public boolean supportsConcurrentWrites() {
+        return false;
+    }
+
+    /**
+     * Tells the storage that the flags are no longer needed. Storages that
+     * keep flags apart from the walls may free them, and the others clear
+     * them; all flags read as zero afterwards. The default implementation
+     * sets the flags of every node to zero.
+     */
+    public void releaseFlags() {
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                setFlags(x, y, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package maze.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import maze.Direction;
+
+/**
+ * Stores each node in a byte outside of the Java heap, with the same layout
+ * as {@link ByteStorage}. Nodes are addressed with long indices and the bytes
+ * are split into chunks of 1 GiB, so the number of nodes is only limited by
+ * the available memory or disk space.
+ * <p>
+ * The storage is either backed by direct buffers, which are limited by
+ * {@code -XX:MaxDirectMemorySize}, or by a file mapped into memory. A mapped
+ * maze persists across JVM restarts: after {@link #force()} or
+ * {@link #close()}, the file can be reopened with {@link #open(Path)} and
+ * passed to any generator to be read without calling generate() again.
+ * <p>
+ * This storage cannot be serialized.
+ */
+public class OffHeapStorage extends MazeStorage implements Closeable, Serializable {
+    private static final long serialVersionUID = 2203367405458950185L;
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    /* The file header holds the magic number, the version and the dimensions. */
+    private static final int MAGIC = 0x4d415a45; // "MAZE"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final transient ByteBuffer[] chunks;
+    private final transient FileChannel channel;
+
+    /* The offsets of the neighbors of a node, indexed by direction ordinal. */
+    private final transient long[] offsets;
+
+    private OffHeapStorage(int width, int height, ByteBuffer[] chunks, FileChannel channel) {
+        super(width, height);
+        this.chunks = chunks;
+        this.channel = channel;
+        offsets = new long[] {-width, 1, width, -1};
+    }
+
+    /**
+     * Creates a storage backed by direct buffers.
+     *
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @return the storage
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws OutOfMemoryError if the direct memory limit is exceeded
+     */
+    public static OffHeapStorage allocateDirect(int width, int height) {
+        checkDimensions(width, height);
+        long size = (long) width * height;
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(size)];
+        for (int k = 0; k < chunks.length; ++k) {
+            chunks[k] = ByteBuffer.allocateDirect(chunkSize(size, k));
+        }
+        return new OffHeapStorage(width, height, chunks, null);
+    }
+
+    /**
+     * Creates a storage backed by a new file mapped into memory. An existing
+     * file is replaced.
+     *
+     * @param  file   the file to create
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @return the storage
+     * @throws IllegalArgumentException if width or height is not positive
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static OffHeapStorage create(Path file, int width, int height) throws IOException {
+        checkDimensions(width, height);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return new OffHeapStorage(width, height, map(channel, (long) width * height), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file created by {@link #create(Path, int, int)} and maps it
+     * into memory. Changes are written back to the file.
+     *
+     * @param  file the file to open
+     * @return the storage
+     * @throws IOException if the file cannot be opened or mapped or if it
+     *         does not hold a maze
+     */
+    public static OffHeapStorage open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Not a maze file: " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a maze file: " + file);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            long size = (long) width * height;
+            if (width <= 0 || height <= 0 || channel.size() < HEADER_SIZE + size) {
+                throw new IOException("Corrupt maze file: " + file);
+            }
+            return new OffHeapStorage(width, height, map(channel, size), channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void checkDimensions(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive");
+        }
+    }
+
+    private static int chunkCount(long size) {
+        return (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkSize(long size, int k) {
+        return (int) Math.min(size - ((long) k << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+    }
+
+    private static ByteBuffer[] map(FileChannel channel, long size) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(size)];
+        for (int k = 0; k < chunks.length; ++k) {
+            long position = HEADER_SIZE + ((long) k << CHUNK_SHIFT);
+            chunks[k] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkSize(size, k));
+        }
+        return chunks;
+    }
+
+    private byte get(long i) {
+        return chunks[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+    }
+
+    private void put(long i, int b) {
+        chunks[(int) (i >>> CHUNK_SHIFT)].put((int) (i & CHUNK_MASK), (byte) b);
+    }
+
+    private long index(int x, int y) {
+        return (long) y * getWidth() + x;
+    }
+
+    @Override
+    public int getWalls(int x, int y) {
+        return get(index(x, y)) & WALL_MASK;
+    }
+
+    @Override
+    public boolean isWall(int x, int y, Direction d) {
+        return (get(index(x, y)) & d.mask) != 0;
+    }
+
+    @Override
+    public void addWall(int x, int y, Direction d) {
+        long i = index(x, y);
+        put(i, get(i) | d.mask);
+        int tx = x + d.dx;
+        int ty = y + d.dy;
+        if (tx >= 0 && tx < getWidth() && ty >= 0 && ty < getHeight()) {
+            long j = index(tx, ty);
+            put(j, get(j) | d.getReverse().mask);
+        }
+    }
+
+    @Override
+    public void removeWall(int x, int y, Direction d) {
+        long i = index(x, y);
+        put(i, get(i) & ~d.mask);
+        int tx = x + d.dx;
+        int ty = y + d.dy;
+        if (tx >= 0 && tx < getWidth() && ty >= 0 && ty < getHeight()) {
+            long j = index(tx, ty);
+            put(j, get(j) & ~d.getReverse().mask);
+        }
+    }
+
+    @Override
+    public void addBorder() {
+        int width = getWidth();
+        int height = getHeight();
+        for (int y = 0; y < height; ++y) {
+            long i = index(0, y);
+            put(i, get(i) | Direction.WEST.mask);
+            i += width - 1;
+            put(i, get(i) | Direction.EAST.mask);
+        }
+        long last = index(0, height - 1);
+        for (int x = 0; x < width; ++x) {
+            put(x, get(x) | Direction.NORTH.mask);
+            put(last + x, get(last + x) | Direction.SOUTH.mask);
+        }
+    }
+
+    @Override
+    public void fill() {
+        fill((byte) WALL_MASK);
+    }
+
+    @Override
+    public void clear() {
+        fill((byte) 0);
+    }
+
+    private void fill(byte value) {
+        byte[] block = new byte[1 << 16];
+        Arrays.fill(block, value);
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer dup = chunk.duplicate();
+            dup.clear();
+            while (dup.remaining() >= block.length) {
+                dup.put(block);
+            }
+            dup.put(block, 0, dup.remaining());
+        }
+    }
+
+    @Override
+    public int getWalls(long i) {
+        return get(i) & WALL_MASK;
+    }
+
+    @Override
+    public boolean isWall(long i, Direction d) {
+        return (get(i) & d.mask) != 0;
+    }
+
+    @Override
+    public void addWall(long i, Direction d) {
+        put(i, get(i) | d.mask);
+        long j = i + offsets[d.ordinal()];
+        put(j, get(j) | reverseMask(d));
+    }
+
+    @Override
+    public void removeWall(long i, Direction d) {
+        put(i, get(i) & ~d.mask);
+        long j = i + offsets[d.ordinal()];
+        put(j, get(j) & ~reverseMask(d));
+    }
+
+    @Override
+    public int getFlags(long i) {
+        return (get(i) >> 4) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(long i, int flags) {
+        put(i, (get(i) & WALL_MASK) | (flags << 4));
+    }
+
+    @Override
+    public void copyRow(int y, byte[] dst, int offset) {
+        int width = getWidth();
+        long i = index(0, y);
+        ByteBuffer chunk = chunks[(int) (i >>> CHUNK_SHIFT)];
+        int j = (int) (i & CHUNK_MASK);
+        if (j <= chunk.capacity() - width) {
+            ByteBuffer dup = chunk.duplicate();
+            dup.position(j);
+            dup.get(dst, offset, width);
+            for (int x = 0; x < width; ++x) {
+                dst[offset + x] &= WALL_MASK;
+            }
+        } else {
+            /* The row spans two chunks. */
+            for (int x = 0; x < width; ++x) {
+                dst[offset + x] = (byte) (get(i + x) & WALL_MASK);
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only view of the nodes. Only a storage of at most 1 GiB
+     * nodes fits in a single buffer.
+     *
+     * @throws UnsupportedOperationException if the storage has more than
+     *         2^30 nodes
+     */
+    @Override
+    public ByteBuffer asReadOnlyBuffer() {
+        if (chunks.length > 1) {
+            throw new UnsupportedOperationException("Storage is too large for a single buffer");
+        }
+        return chunks[0].asReadOnlyBuffer().clear();
+    }
+
+    /** Clears the flags, which share their bytes with the walls. */
+    @Override
+    public void releaseFlags() {
+        for (ByteBuffer chunk : chunks) {
+            int limit = chunk.capacity();
+            int i = 0;
+            for (; i <= limit - 8; i += 8) {
+                chunk.putLong(i, chunk.getLong(i) & (Swar.ONES * WALL_MASK));
+            }
+            for (; i < limit; ++i) {
+                chunk.put(i, (byte) (chunk.get(i) & WALL_MASK));
+            }
+        }
+    }
+
+    @Override
+    public long countWalls(Direction d) {
+        int mask = d.mask;
+        long count = 0;
+        for (ByteBuffer chunk : chunks) {
+            int limit = chunk.capacity();
+            int i = 0;
+            for (; i <= limit - 8; i += 8) {
+                count += Swar.countWalls(chunk.getLong(i), mask);
+            }
+            for (; i < limit; ++i) {
+                if ((chunk.get(i) & mask) != 0) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long countDeadEnds() {
+        long count = 0;
+        for (ByteBuffer chunk : chunks) {
+            int limit = chunk.capacity();
+            int i = 0;
+            for (; i <= limit - 8; i += 8) {
+                count += Swar.countDeadEnds(chunk.getLong(i));
+            }
+            for (; i < limit; ++i) {
+                if (Swar.isDeadEnd(chunk.get(i))) {
+                    ++count;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Override
+    public int getFlags(int x, int y) {
+        return (get(index(x, y)) >> 4) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(int x, int y, int flags) {
+        long i = index(x, y);
+        put(i, (get(i) & WALL_MASK) | (flags << 4));
+    }
+
+    /**
+     * Writes any changes to a mapped storage back to its file. Does nothing
+     * if the storage is not mapped.
+     */
+    public void force() {
+        if (channel != null) {
+            for (ByteBuffer chunk : chunks) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+    }
+
+    /**
+     * Writes any changes back to the file and closes it. The mapping stays
+     * valid until the storage is garbage collected. Does nothing if the
+     * storage is not mapped.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(getClass().getName());
+    }
+}
@@ -0,0 +1,267 @@
+package maze.storage;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import maze.Direction;
+
+/**
+ * Stores every wall exactly once, using two bits per node: one for the east
+ * wall and one for the south wall. The north and west walls of a node are
+ * the south and east walls of its neighbors, so the nodes are laid out on a
+ * grid with an extra row above and an extra column to the left whose bits
+ * hold the north and west border. This takes a quarter of the memory of
+ * {@link ByteStorage}.
+ * <p>
+ * Flags are kept in a separate array that is only allocated when a flag is
+ * first set, and which is freed by {@link #releaseFlags()}, {@link #fill()}
+ * and {@link #clear()}.
+ */
+public class PackedStorage extends MazeStorage implements Serializable {
+    private static final long serialVersionUID = -7263407125417009716L;
+
+    private static final long EAST  = 1;
+    private static final long SOUTH = 2;
+
+    private final long[] words;
+    private final long stride;
+    private long[] flags;
+
+    /**
+     * Sets the dimensions of the storage.
+     *
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive or
+     *         if the maze has more nodes than the storage can hold
+     */
+    public PackedStorage(int width, int height) {
+        super(width, height);
+        stride = width + 1L;
+        long length = (2 * stride * (height + 1L) + 63) >>> 6;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large for packed storage");
+        }
+        words = new long[(int) length];
+    }
+
+    /** Returns the index of a node on the padded grid. */
+    private long index(int x, int y) {
+        return (y + 1) * stride + x + 1;
+    }
+
+    /** Returns the index on the padded grid of the node at a row-major index. */
+    private long index(long i) {
+        return i + row(i) + stride + 1;
+    }
+
+    private boolean get(long j, long bit) {
+        return (words[(int) (j >>> 5)] & (bit << ((j & 31) << 1))) != 0;
+    }
+
+    private void set(long j, long bit) {
+        words[(int) (j >>> 5)] |= bit << ((j & 31) << 1);
+    }
+
+    private void unset(long j, long bit) {
+        words[(int) (j >>> 5)] &= ~(bit << ((j & 31) << 1));
+    }
+
+    @Override
+    public int getWalls(int x, int y) {
+        return getWallsAt(index(x, y));
+    }
+
+    @Override
+    public boolean isWall(int x, int y, Direction d) {
+        return isWallAt(index(x, y), d);
+    }
+
+    @Override
+    public void addWall(int x, int y, Direction d) {
+        addWallAt(index(x, y), d);
+    }
+
+    @Override
+    public void removeWall(int x, int y, Direction d) {
+        removeWallAt(index(x, y), d);
+    }
+
+    @Override
+    public int getWalls(long i) {
+        return getWallsAt(index(i));
+    }
+
+    @Override
+    public boolean isWall(long i, Direction d) {
+        return isWallAt(index(i), d);
+    }
+
+    @Override
+    public void addWall(long i, Direction d) {
+        addWallAt(index(i), d);
+    }
+
+    @Override
+    public void removeWall(long i, Direction d) {
+        removeWallAt(index(i), d);
+    }
+
+    private int getWallsAt(long j) {
+        int walls = 0;
+        if (get(j - stride, SOUTH)) {
+            walls |= Direction.NORTH.mask;
+        }
+        if (get(j, EAST)) {
+            walls |= Direction.EAST.mask;
+        }
+        if (get(j, SOUTH)) {
+            walls |= Direction.SOUTH.mask;
+        }
+        if (get(j - 1, EAST)) {
+            walls |= Direction.WEST.mask;
+        }
+        return walls;
+    }
+
+    private boolean isWallAt(long j, Direction d) {
+        switch (d) {
+        case NORTH: return get(j - stride, SOUTH);
+        case EAST:  return get(j, EAST);
+        case SOUTH: return get(j, SOUTH);
+        default:    return get(j - 1, EAST);
+        }
+    }
+
+    private void addWallAt(long j, Direction d) {
+        switch (d) {
+        case NORTH: set(j - stride, SOUTH); break;
+        case EAST:  set(j, EAST);           break;
+        case SOUTH: set(j, SOUTH);          break;
+        default:    set(j - 1, EAST);       break;
+        }
+    }
+
+    private void removeWallAt(long j, Direction d) {
+        switch (d) {
+        case NORTH: unset(j - stride, SOUTH); break;
+        case EAST:  unset(j, EAST);           break;
+        case SOUTH: unset(j, SOUTH);          break;
+        default:    unset(j - 1, EAST);       break;
+        }
+    }
+
+    @Override
+    public long countWalls(Direction d) {
+        long offset;
+        long bit;
+        switch (d) {
+        case NORTH: offset = -stride; bit = SOUTH; break;
+        case EAST:  offset = 0;       bit = EAST;  break;
+        case SOUTH: offset = 0;       bit = SOUTH; break;
+        default:    offset = -1;      bit = EAST;  break;
+        }
+        int width = getWidth();
+        long count = 0;
+        for (int y = 0; y < getHeight(); ++y) {
+            long from = index(0, y) + offset;
+            count += countBits(from, from + width, bit);
+        }
+        return count;
+    }
+
+    /** Returns the number of nodes in [from, to) of the padded grid with a bit set. */
+    private long countBits(long from, long to, long bit) {
+        long pattern = (bit == EAST) ? 0x5555555555555555L : 0xaaaaaaaaaaaaaaaaL;
+        int first = (int) (from >>> 5);
+        int last = (int) ((to - 1) >>> 5);
+        long head = -1L << ((from & 31) << 1);
+        long tail = -1L >>> ((31 - ((to - 1) & 31)) << 1);
+        if (first == last) {
+            return Long.bitCount(words[first] & pattern & head & tail);
+        }
+        long count = Long.bitCount(words[first] & pattern & head);
+        for (int k = first + 1; k < last; ++k) {
+            count += Long.bitCount(words[k] & pattern);
+        }
+        return count + Long.bitCount(words[last] & pattern & tail);
+    }
+
+    /** Returns true, since every wall is stored once. */
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public void addBorder() {
+        int width = getWidth();
+        int height = getHeight();
+        for (int y = 0; y < height; ++y) {
+            addWall(0, y, Direction.WEST);
+            addWall(width - 1, y, Direction.EAST);
+        }
+        for (int x = 0; x < width; ++x) {
+            addWall(x, 0, Direction.NORTH);
+            addWall(x, height - 1, Direction.SOUTH);
+        }
+    }
+
+    @Override
+    public void fill() {
+        Arrays.fill(words, -1L);
+        /* Clears the bits of the padding that do not belong to any wall. */
+        long end = stride * (getHeight() + 1L);
+        unset(0, SOUTH);
+        for (long j = 0; j < stride; ++j) {
+            unset(j, EAST);
+        }
+        for (long j = stride; j < end; j += stride) {
+            unset(j, SOUTH);
+        }
+        for (long j = end; j < (long) words.length << 5; ++j) {
+            unset(j, EAST | SOUTH);
+        }
+        flags = null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0L);
+        flags = null;
+    }
+
+    @Override
+    public int getFlags(int x, int y) {
+        return getFlags((long) y * getWidth() + x);
+    }
+
+    @Override
+    public void setFlags(int x, int y, int flags) {
+        setFlags((long) y * getWidth() + x, flags);
+    }
+
+    @Override
+    public int getFlags(long i) {
+        if (flags == null) {
+            return 0;
+        }
+        return (int) (flags[(int) (i >>> 4)] >>> ((i & 15) << 2)) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(long i, int flags) {
+        if (this.flags == null) {
+            this.flags = new long[(int) ((getSize() + 15) >>> 4)];
+        }
+        int shift = (int) (i & 15) << 2;
+        int k = (int) (i >>> 4);
+        this.flags[k] = (this.flags[k] & ~((long) WALL_MASK << shift))
+                | ((long) (flags & WALL_MASK) << shift);
+    }
+
+    @Override
+    public void releaseFlags() {
+        flags = null;
+    }
+}
@@ -0,0 +1,41 @@
+package maze.storage;
+
+/**
+ * Operations on eight nodes at once, each stored in a byte of a long whose
+ * low four bits hold the walls. The byte order of the long does not matter,
+ * since every operation works on each byte on its own.
+ */
+final class Swar {
+    /* A one in the lowest bit of every byte. */
+    static final long ONES = 0x0101010101010101L;
+
+    private static final long LOW_SEVEN = 0x7f7f7f7f7f7f7f7fL;
+
+    private Swar() {
+    }
+
+    /** Returns the number of bytes in which the bits of mask are set. */
+    static int countWalls(long word, int mask) {
+        return Long.bitCount(word & (ONES * mask));
+    }
+
+    /** Returns the number of bytes with exactly three of the four wall bits set. */
+    static int countDeadEnds(long word) {
+        long walls = (word & ONES)
+                + ((word >>> 1) & ONES)
+                + ((word >>> 2) & ONES)
+                + ((word >>> 3) & ONES);
+        return countZeroBytes(walls ^ (ONES * 3));
+    }
+
+    /** Checks if a byte holds exactly three of the four wall bits. */
+    static boolean isDeadEnd(int b) {
+        return Integer.bitCount(b & MazeStorage.WALL_MASK) == 3;
+    }
+
+    /** Returns the number of bytes that are zero. */
+    private static int countZeroBytes(long word) {
+        /* The high bit of each byte ends up set only if the byte is zero. */
+        return Long.bitCount(~(((word & LOW_SEVEN) + LOW_SEVEN) | word | LOW_SEVEN));
+    }
+}
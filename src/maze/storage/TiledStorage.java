@@ -0,0 +1,225 @@
+package maze.storage;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import maze.Direction;
+
+/**
+ * Stores each node in a byte of a heap array, like {@link ByteStorage}, but
+ * lays the nodes out in square tiles instead of rows. The tiles are stored in
+ * row-major order and so are the nodes within a tile. With the default tile
+ * of 8 by 8 nodes, a tile fills one 64-byte cache line, so a step north or
+ * south usually stays in the same line instead of jumping a whole row ahead.
+ * <p>
+ * The tiles are meant for generators that wander in every direction, such as
+ * {@link maze.Wilsons} and {@link maze.RecursiveBacktracker}. Whether they pay
+ * off depends on the machine: the generators address nodes by row-major
+ * index, which this storage has to translate on every access, and the walks
+ * tend to stay within a region that is already cached in either layout.
+ * Measure with the {@code StorageLayoutBenchmark} before choosing it over
+ * {@link ByteStorage}. The width and height are rounded up to a multiple of
+ * the tile size, so narrow mazes waste some memory.
+ */
+public class TiledStorage extends MazeStorage implements Serializable {
+    private static final long serialVersionUID = 4460212675317390598L;
+
+    private static final int DEFAULT_TILE_SIZE = 8;
+    private static final int MAX_TILE_SIZE = 64;
+
+    private final byte[] b;
+
+    /* The side of a tile is 1 << shift; mask selects a position in a tile. */
+    private final int shift;
+    private final int mask;
+
+    /* The parts of the position of a node given by its column and its row. */
+    private final int[] columns;
+    private final int[] rows;
+
+    /**
+     * Sets the dimensions of the storage, using tiles of 8 by 8 nodes.
+     *
+     * @param  width  the width of the maze
+     * @param  height the height of the maze
+     * @throws IllegalArgumentException if width or height is not positive or
+     *         if the maze has more nodes than an array can hold
+     */
+    public TiledStorage(int width, int height) {
+        this(width, height, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Sets the dimensions of the storage and the side of a tile.
+     *
+     * @param  width    the width of the maze
+     * @param  height   the height of the maze
+     * @param  tileSize the number of nodes along each side of a tile
+     * @throws IllegalArgumentException if width or height is not positive, if
+     *         tileSize is not a power of two from 2 to 64 or if the maze has
+     *         more nodes than an array can hold
+     */
+    public TiledStorage(int width, int height, int tileSize) {
+        super(width, height);
+        if (tileSize < 2 || tileSize > MAX_TILE_SIZE || Integer.bitCount(tileSize) != 1) {
+            throw new IllegalArgumentException("Tile size must be a power of two from 2 to 64");
+        }
+        shift = Integer.numberOfTrailingZeros(tileSize);
+        mask = tileSize - 1;
+        long tilesPerRow = (width + (long) mask) >>> shift;
+        long tileRows = (height + (long) mask) >>> shift;
+        long length = (tilesPerRow * tileRows) << (2 * shift);
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Maze is too large for a byte array");
+        }
+        b = new byte[(int) length];
+        columns = new int[width];
+        for (int x = 0; x < width; ++x) {
+            columns[x] = ((x >>> shift) << (2 * shift)) | (x & mask);
+        }
+        rows = new int[height];
+        for (int y = 0; y < height; ++y) {
+            rows[y] = (int) (((y >>> shift) * tilesPerRow << (2 * shift)) | ((y & mask) << shift));
+        }
+    }
+
+    /** Returns the number of nodes along each side of a tile. */
+    public int getTileSize() {
+        return mask + 1;
+    }
+
+    /** Returns the position of a node in the array. */
+    private int position(int x, int y) {
+        return rows[y] + columns[x];
+    }
+
+    /** Returns the position in the array of the node at a row-major index. */
+    private int position(long i) {
+        int y = (int) row(i);
+        return position((int) i - y * getWidth(), y);
+    }
+
+    @Override
+    public int getWalls(int x, int y) {
+        return b[position(x, y)] & WALL_MASK;
+    }
+
+    @Override
+    public boolean isWall(int x, int y, Direction d) {
+        return (b[position(x, y)] & d.mask) != 0;
+    }
+
+    @Override
+    public void addWall(int x, int y, Direction d) {
+        b[position(x, y)] |= d.mask;
+        int tx = x + d.dx;
+        int ty = y + d.dy;
+        if (tx >= 0 && tx < getWidth() && ty >= 0 && ty < getHeight()) {
+            b[position(tx, ty)] |= reverseMask(d);
+        }
+    }
+
+    @Override
+    public void removeWall(int x, int y, Direction d) {
+        b[position(x, y)] &= ~d.mask;
+        int tx = x + d.dx;
+        int ty = y + d.dy;
+        if (tx >= 0 && tx < getWidth() && ty >= 0 && ty < getHeight()) {
+            b[position(tx, ty)] &= ~reverseMask(d);
+        }
+    }
+
+    @Override
+    public int getWalls(long i) {
+        return b[position(i)] & WALL_MASK;
+    }
+
+    @Override
+    public boolean isWall(long i, Direction d) {
+        return (b[position(i)] & d.mask) != 0;
+    }
+
+    @Override
+    public void addWall(long i, Direction d) {
+        int y = (int) row(i);
+        int x = (int) i - y * getWidth();
+        b[position(x, y)] |= d.mask;
+        b[position(x + d.dx, y + d.dy)] |= reverseMask(d);
+    }
+
+    @Override
+    public void removeWall(long i, Direction d) {
+        int y = (int) row(i);
+        int x = (int) i - y * getWidth();
+        b[position(x, y)] &= ~d.mask;
+        b[position(x + d.dx, y + d.dy)] &= ~reverseMask(d);
+    }
+
+    @Override
+    public void addBorder() {
+        int width = getWidth();
+        int height = getHeight();
+        for (int y = 0; y < height; ++y) {
+            b[position(0, y)] |= Direction.WEST.mask;
+            b[position(width - 1, y)] |= Direction.EAST.mask;
+        }
+        for (int x = 0; x < width; ++x) {
+            b[position(x, 0)] |= Direction.NORTH.mask;
+            b[position(x, height - 1)] |= Direction.SOUTH.mask;
+        }
+    }
+
+    @Override
+    public void fill() {
+        /* The padding is filled too, but no node ever reads it. */
+        Arrays.fill(b, (byte) WALL_MASK);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(b, (byte) 0);
+    }
+
+    @Override
+    public int getFlags(int x, int y) {
+        return (b[position(x, y)] >> 4) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(int x, int y, int flags) {
+        int j = position(x, y);
+        b[j] = (byte) ((b[j] & WALL_MASK) | (flags << 4));
+    }
+
+    @Override
+    public int getFlags(long i) {
+        return (b[position(i)] >> 4) & WALL_MASK;
+    }
+
+    @Override
+    public void setFlags(long i, int flags) {
+        int j = position(i);
+        b[j] = (byte) ((b[j] & WALL_MASK) | (flags << 4));
+    }
+
+    @Override
+    public void copyRow(int y, byte[] dst, int offset) {
+        int row = rows[y];
+        for (int x = 0; x < columns.length; ++x) {
+            dst[offset + x] = (byte) (b[row + columns[x]] & WALL_MASK);
+        }
+    }
+
+    /** Clears the flags, which share their bytes with the walls. */
+    @Override
+    public void releaseFlags() {
+        for (int i = 0; i < b.length; ++i) {
+            b[i] &= WALL_MASK;
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+}